@@ -0,0 +1,165 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Binds the rows of a 50 article response again and again, like a fling over a recycled pool of rows,
+ * and checks that onBindViewHolder allocates nothing on top of what the TextViews themselves allocate
+ * when the same texts and colors are set on them directly. Every article has a thumbnail that isn't in the memory
+ * cache, so each bind also starts loading an image. The counts are logged with the tag ArticleAdapterAllocationTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleAdapterAllocationTest {
+    private static final String TAG = "ArticleAdapterAllocationTest";
+    private static final String FIXTURE = "guardian_search_50.json";
+    private static final int POOL_SIZE = 8;    //about the rows on the screen plus the cached ones
+    private static final int WARMUP_FLINGS = 3;
+    private static final int MEASURED_FLINGS = 10;
+
+    private ArticleAdapter adapter;
+    private List<ArticleAdapter.ArticleViewHolder> pool;
+    private List<Article> articles;
+    private int[] rowColors;
+    private String authorPrefix;
+
+    private int bindAllocations;
+    private int baselineAllocations;
+
+    @Test
+    public void onBindViewHolder_allocatesNothingDuringFling() throws IOException {
+        articles = readFixtureArticles();
+        //the trail texts are parsed from HTML on the diff thread after a load
+        //the thumbnails are missing files, so they are never cached and every bind has to request its image
+        for (int i = 0; i < articles.size(); i++) {
+            Article article = articles.get(i);
+            article.setDisplayTrailText(RowTextPreparer.formatTrailText(article.getTrailText()));
+            article.setThumbnailUrl("file:///nonexistent/thumbnail_" + i + ".jpg");
+        }
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createAdapter();
+
+                //the first flings create the strings of the articles, like the diff thread does after a load
+                for (int i = 0; i < WARMUP_FLINGS; i++) {
+                    bindRows();
+                    setViewsDirectly();
+                }
+
+                baselineAllocations = countAllocations(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < MEASURED_FLINGS; i++) {
+                            setViewsDirectly();
+                        }
+                    }
+                });
+                bindAllocations = countAllocations(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < MEASURED_FLINGS; i++) {
+                            bindRows();
+                        }
+                    }
+                });
+            }
+        });
+
+        Log.i(TAG, "allocations in " + MEASURED_FLINGS + " flings of " + articles.size() + " rows: onBindViewHolder "
+                + bindAllocations + ", setting the views directly " + baselineAllocations);
+        assertEquals(baselineAllocations, bindAllocations);
+    }
+
+    private void createAdapter() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        authorPrefix = context.getString(R.string.author_pre_tag);
+        adapter = new ArticleAdapter(context, new ArrayList<>(articles), new ArticleAdapter.OnItemClickListener() {
+            @Override
+            public void onItemClick(Article articleListItem) {
+            }
+        });
+        RecyclerView parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+
+        pool = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool.add(adapter.onCreateViewHolder(parent, 0));
+        }
+
+        //the category colors picked by the adapter, so the baseline sets the same ones
+        rowColors = new int[articles.size()];
+        for (int position = 0; position < articles.size(); position++) {
+            ArticleAdapter.ArticleViewHolder holder = holderFor(position);
+            adapter.onBindViewHolder(holder, position);
+            rowColors[position] = holder.categoryView.getCurrentTextColor();
+        }
+    }
+
+    //scroll through the whole list, the rows of the pool are reused one after the other
+    private void bindRows() {
+        for (int position = 0; position < articles.size(); position++) {
+            adapter.onBindViewHolder(holderFor(position), position);
+        }
+    }
+
+    //the same changes of the views as bindRows, without the adapter
+    private void setViewsDirectly() {
+        for (int position = 0; position < articles.size(); position++) {
+            ArticleAdapter.ArticleViewHolder holder = holderFor(position);
+            Article article = articles.get(position);
+            String authorLabel = article.getAuthorLabel(authorPrefix);
+            holder.dateView.setText(article.getPublicationDate());
+            holder.timeView.setText(article.getPublicationTime());
+            holder.categoryView.setText(article.getCategory());
+            holder.titleView.setText(article.getArticleTitle());
+            holder.trailTextView.setText(article.getDisplayTrailText());
+            holder.authorView.setText(authorLabel != null ? authorLabel : "");
+            holder.categoryView.setTextColor(rowColors[position]);
+            holder.colorIndicatorView.setBackgroundColor(rowColors[position]);
+        }
+    }
+
+    private ArticleAdapter.ArticleViewHolder holderFor(int position) {
+        return pool.get(position % pool.size());
+    }
+
+    //the number of objects allocated by the work on this thread
+    @SuppressWarnings("deprecation")
+    private static int countAllocations(Runnable work) {
+        Runtime.getRuntime().gc();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        work.run();
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+    //the fixture is packaged with the test apk, not with the app
+    private static List<Article> readFixtureArticles() throws IOException {
+        AssetManager assets = InstrumentationRegistry.getContext().getAssets();
+        InputStream in = assets.open(FIXTURE);
+        try {
+            return ArticleStreamParser.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.guardiannews;
+
+import android.content.res.AssetManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the heap retained by the parsed articles of a six category load (6 x 50 = 300 articles),
+ * with and without a StringPool shared by the categories. The loads are kept like the caches keep them,
+ * and the retained heap is read after a garbage collection. Read the numbers from logcat (tag ArticleHeapBenchmark).
+ * The responses are generated (see assets/README.md): their 262 bylines have only 16 distinct contributors,
+ * so the saving of the pool is larger here than on real responses, which repeat fewer names.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleHeapBenchmark {
+    private static final String TAG = "ArticleHeapBenchmark";
+    private static final String[] SECTIONS = {"cities", "environment", "global-development", "science", "technology", "world"};
+    private static final int RETAINED_LOADS = 20;    //the difference of one load is too small to measure on its own
+
+    @Test
+    public void pooledLoad_sharesTheContributorNames() throws IOException {
+        byte[][] responses = readFixtures();
+
+        StringPool pool = new StringPool();
+        List<Article> pooled = flatten(parseLoad(responses, pool));
+        List<Article> unpooled = flatten(parseLoad(responses, null));
+
+        assertEquals(300, pooled.size());
+        int authored = 0;
+        for (Article article : unpooled) {
+            if (article.getAuthorName() != null) {
+                authored++;
+            }
+        }
+        //every contributor name is read once per article without the pool, and once per contributor with it
+        assertEquals(authored, distinctAuthorInstances(unpooled));
+        assertEquals(pool.size(), distinctAuthorInstances(pooled));
+        assertTrue(pool.size() < authored);
+        for (int i = 0; i < pooled.size(); i++) {
+            assertEquals(unpooled.get(i).getAuthorName(), pooled.get(i).getAuthorName());
+        }
+    }
+
+    @Test
+    public void compareRetainedHeap() throws IOException {
+        byte[][] responses = readFixtures();
+
+        long unpooled = measureRetainedBytes(responses, false);
+        long pooled = measureRetainedBytes(responses, true);
+
+        Log.i(TAG, "retained by a load of 300 articles: without pool " + unpooled / 1024 + " KB, with pool "
+                + pooled / 1024 + " KB, saved " + (unpooled - pooled) / 1024 + " KB ("
+                + (unpooled - pooled) * 100 / unpooled + "%)");
+    }
+
+    //the heap retained by one load, the average of RETAINED_LOADS loads kept at the same time
+    private static long measureRetainedBytes(byte[][] responses, boolean pooled) throws IOException {
+        List<List<List<Article>>> loads = new ArrayList<>(RETAINED_LOADS);
+        long before = usedMemory();
+        for (int i = 0; i < RETAINED_LOADS; i++) {
+            loads.add(parseLoad(responses, pooled ? new StringPool() : null));
+        }
+        long after = usedMemory();
+        //keep the loads reachable until the heap has been measured
+        assertEquals(RETAINED_LOADS, loads.size());
+        return (after - before) / RETAINED_LOADS;
+    }
+
+    //the lists of the categories, the pool is shared by the whole load like in ArticleLoader
+    private static List<List<Article>> parseLoad(byte[][] responses, StringPool pool) throws IOException {
+        List<List<Article>> load = new ArrayList<>(responses.length);
+        for (byte[] response : responses) {
+            load.add(ArticleStreamParser.parse(new ByteArrayInputStream(response), pool));
+        }
+        return load;
+    }
+
+    private static List<Article> flatten(List<List<Article>> load) {
+        List<Article> articles = new ArrayList<>();
+        for (List<Article> categoryArticles : load) {
+            articles.addAll(categoryArticles);
+        }
+        return articles;
+    }
+
+    private static int distinctAuthorInstances(List<Article> articles) {
+        Map<String, Boolean> instances = new IdentityHashMap<>();
+        for (Article article : articles) {
+            if (article.getAuthorName() != null) {
+                instances.put(article.getAuthorName(), Boolean.TRUE);
+            }
+        }
+        return instances.size();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //the fixtures are packaged with the test apk, not with the app
+    private static byte[][] readFixtures() throws IOException {
+        AssetManager assets = InstrumentationRegistry.getContext().getAssets();
+        byte[][] responses = new byte[SECTIONS.length][];
+        for (int i = 0; i < SECTIONS.length; i++) {
+            InputStream in = new GZIPInputStream(assets.open("sections/" + SECTIONS[i] + "_50.json.gz"));
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                responses[i] = out.toByteArray();
+            } finally {
+                in.close();
+            }
+        }
+        return responses;
+    }
+}
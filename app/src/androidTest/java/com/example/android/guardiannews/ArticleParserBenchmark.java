@@ -0,0 +1,128 @@
+package com.example.android.guardiannews;
+
+import android.content.res.AssetManager;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the streaming parser with the org.json parse path on a Guardian search response
+ * of 50 results. Run it on a device and read the numbers from logcat (tag ArticleParserBenchmark).
+ * The response is generated with the structure of a real one, its texts are random words (see assets/README.md).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleParserBenchmark {
+    private static final String TAG = "ArticleParserBenchmark";
+    private static final String FIXTURE = "guardian_search_50.json";
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 100;
+
+    @Test
+    public void streamingParserMatchesDomParser() throws IOException {
+        byte[] response = readFixture();
+
+        List<Article> streamed = ArticleStreamParser.parse(new ByteArrayInputStream(response));
+        List<Article> dom = ArticleUtils.getArticleList(ArticleUtils.readFromStream(new ByteArrayInputStream(response)));
+
+        assertEquals(dom.size(), streamed.size());
+        for (int i = 0; i < dom.size(); i++) {
+            assertEquals(dom.get(i).getArticleUrl(), streamed.get(i).getArticleUrl());
+            assertEquals(dom.get(i).getArticleTitle(), streamed.get(i).getArticleTitle());
+            assertEquals(dom.get(i).getPublicationDate(), streamed.get(i).getPublicationDate());
+            assertEquals(dom.get(i).getPublicationTime(), streamed.get(i).getPublicationTime());
+            assertEquals(dom.get(i).getCategory(), streamed.get(i).getCategory());
+            assertEquals(dom.get(i).getTrailText(), streamed.get(i).getTrailText());
+            assertEquals(dom.get(i).getAuthorName(), streamed.get(i).getAuthorName());
+        }
+    }
+
+    @Test
+    public void compareParsers() throws IOException {
+        final byte[] response = readFixture();
+
+        Result dom = measure(new Parse() {
+            @Override
+            public List<Article> parse() throws IOException {
+                return ArticleUtils.getArticleList(ArticleUtils.readFromStream(new ByteArrayInputStream(response)));
+            }
+        });
+        Result streaming = measure(new Parse() {
+            @Override
+            public List<Article> parse() throws IOException {
+                return ArticleStreamParser.parse(new ByteArrayInputStream(response));
+            }
+        });
+
+        Log.i(TAG, "org.json:  " + dom);
+        Log.i(TAG, "streaming: " + streaming);
+    }
+
+    private interface Parse {
+        List<Article> parse() throws IOException;
+    }
+
+    private static class Result {
+        long nanosPerParse;
+        long bytesAllocatedPerParse;
+        long gcCount;
+
+        @Override
+        public String toString() {
+            return nanosPerParse / 1000 + " us/parse, " + bytesAllocatedPerParse / 1024 + " KB allocated/parse, "
+                    + gcCount + " GCs in " + MEASURED_ROUNDS + " parses";
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Result measure(Parse parse) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parse.parse();
+        }
+        Runtime.getRuntime().gc();
+
+        Debug.resetThreadAllocSize();
+        Debug.resetGlobalGcInvocationCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            parse.parse();
+        }
+        long elapsed = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+
+        Result result = new Result();
+        result.nanosPerParse = elapsed / MEASURED_ROUNDS;
+        result.bytesAllocatedPerParse = Debug.getThreadAllocSize() / MEASURED_ROUNDS;
+        result.gcCount = Debug.getGlobalGcInvocationCount();
+        return result;
+    }
+
+    //the fixture is packaged with the test apk, not with the app
+    private static byte[] readFixture() throws IOException {
+        AssetManager assets = InstrumentationRegistry.getContext().getAssets();
+        InputStream in = assets.open(FIXTURE);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
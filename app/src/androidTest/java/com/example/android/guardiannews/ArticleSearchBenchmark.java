@@ -0,0 +1,117 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the latency of the offline search with 10 000 and 100 000 indexed articles.
+ * Run it on a device and read the numbers from logcat (tag ArticleSearchBenchmark).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleSearchBenchmark {
+    private static final String TAG = "ArticleSearchBenchmark";
+    private static final String DATABASE_NAME = "search_benchmark.db";
+    private static final int SEARCH_LIMIT = 100;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 50;
+
+    private static final String[] SECTIONS = {"cities", "environment", "global-development", "science", "technology", "world"};
+    private static final String[] WORDS = {"climate", "election", "budget", "housing", "energy", "football", "vaccine",
+            "market", "rocket", "flood", "court", "museum", "protest", "startup", "ocean", "transport", "school",
+            "drought", "satellite", "refugee", "festival", "mayor", "privacy", "carbon", "harvest", "strike"};
+    private static final String[] SEARCHES = {"climate", "rock", "housing market", "carbon ener", "zzz"};
+
+    private Context context;
+    private ArticleStore store;
+
+    @Before
+    public void createStore() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        //every article is kept, the benchmark searches all of them
+        store = new ArticleStore(context, DATABASE_NAME, 0);
+    }
+
+    @After
+    public void deleteStore() {
+        store.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void search10k() {
+        fillStore(10000);
+        measureSearches(10000);
+    }
+
+    @Test
+    public void search100k() {
+        fillStore(100000);
+        measureSearches(100000);
+    }
+
+    //store the articles in batches of one page, as the loader would
+    private void fillStore(int count) {
+        Random random = new Random(count);
+        long start = System.nanoTime();
+        for (int batch = 0; batch < count / 200; batch++) {
+            List<Article> articles = new ArrayList<>(200);
+            for (int i = 0; i < 200; i++) {
+                int index = batch * 200 + i;
+                Article article = new Article();
+                article.setArticleUrl("https://www.theguardian.com/article/" + index);
+                article.setArticleTitle(sentence(random, 8));
+                article.setTrailText(sentence(random, 25));
+                article.setAuthorName("Author " + random.nextInt(500));
+                article.setPublicationMillis(1500000000000L + index * 60000L);
+                articles.add(article);
+            }
+            store.upsert(SECTIONS[batch % SECTIONS.length], articles);
+        }
+        Log.i(TAG, count + " articles indexed in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private void measureSearches(int count) {
+        for (String search : SEARCHES) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                store.search(search, SEARCH_LIMIT);
+            }
+            long[] times = new long[MEASURED_ROUNDS];
+            int found = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                found = store.search(search, SEARCH_LIMIT).size();
+                times[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            Log.i(TAG, count + " articles, search \"" + search + "\" (" + found + " results): median "
+                    + times[MEASURED_ROUNDS / 2] / 1000 + " us, p90 " + times[MEASURED_ROUNDS * 9 / 10] / 1000 + " us");
+            assertTrue(found <= SEARCH_LIMIT);
+        }
+    }
+
+    private static String sentence(Random random, int wordCount) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+}
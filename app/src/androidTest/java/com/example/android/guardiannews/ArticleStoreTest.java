@@ -0,0 +1,167 @@
+package com.example.android.guardiannews;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the upsert, the pruning and the paged queries of the article store on an in-memory database,
+ * and logs how long the local re-query of a settings change takes (tag ArticleStoreTest).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleStoreTest {
+    private static final String TAG = "ArticleStoreTest";
+
+    private ArticleStore store;
+
+    @Before
+    public void createStore() {
+        //a null name creates an in-memory database
+        store = new ArticleStore(InstrumentationRegistry.getTargetContext(), null);
+    }
+
+    @After
+    public void closeStore() {
+        store.close();
+    }
+
+    @Test
+    public void query_filtersBySectionAndOrdersByPublicationTime() {
+        store.upsert("science", Arrays.asList(article("s1", 1000), article("s2", 3000)));
+        store.upsert("world", Arrays.asList(article("w1", 2000), article("w2", 4000)));
+        store.upsert("cities", Collections.singletonList(article("c1", 5000)));
+
+        assertEquals(Arrays.asList("w2", "s2", "w1", "s1"), urls(store.query(Arrays.asList("science", "world"), true, 10, 0)));
+        assertEquals(Arrays.asList("s1", "w1", "s2", "w2"), urls(store.query(Arrays.asList("science", "world"), false, 10, 0)));
+        //the second page of two articles
+        assertEquals(Arrays.asList("w1", "s1"), urls(store.query(Arrays.asList("science", "world"), true, 2, 2)));
+    }
+
+    @Test
+    public void upsert_replacesArticleWithTheSameUrl() {
+        store.upsert("science", Collections.singletonList(article("s1", 1000)));
+        Article updated = article("s1", 1000);
+        updated.setArticleTitle("updated title");
+        store.upsert("science", Collections.singletonList(updated));
+
+        List<Article> articles = store.query(Collections.singletonList("science"), true, 10, 0);
+        assertEquals(1, articles.size());
+        assertEquals("updated title", articles.get(0).getArticleTitle());
+        assertEquals(1000, articles.get(0).getPublicationMillis());
+    }
+
+    @Test
+    public void upsert_keepsTheNewestArticlesOfEachSection() {
+        store.close();
+        store = new ArticleStore(InstrumentationRegistry.getTargetContext(), null, 3);
+
+        store.upsert("science", Arrays.asList(article("s1", 1000), article("s2", 2000), article("s3", 3000)));
+        store.upsert("world", Arrays.asList(article("w1", 500), article("w2", 600)));
+        store.upsert("science", Arrays.asList(article("s4", 4000), article("s5", 5000)));
+
+        assertEquals(Arrays.asList("s5", "s4", "s3"), urls(store.query(Collections.singletonList("science"), true, 10, 0)));
+        //the other sections keep their own articles, even if they are older
+        assertEquals(Arrays.asList("w2", "w1"), urls(store.query(Collections.singletonList("world"), true, 10, 0)));
+        //the deleted articles are gone from the search index too
+        assertTrue(store.search("s1", 10).isEmpty());
+        assertEquals(Collections.singletonList("s5"), urls(store.search("s5", 10)));
+    }
+
+    @Test
+    public void lastFetched_isZeroUntilEverySectionIsStored() {
+        store.upsert("science", Collections.singletonList(article("s1", 1000)));
+        assertEquals(0, store.lastFetched(Arrays.asList("science", "world")));
+
+        store.upsert("world", Collections.singletonList(article("w1", 1000)));
+        assertTrue(store.lastFetched(Arrays.asList("science", "world")) > 0);
+    }
+
+    @Test
+    public void search_matchesWordPrefixesOfTitleTrailTextAndAuthor() {
+        Article climate = article("climate", 1000);
+        climate.setArticleTitle("Climate talks stall");
+        climate.setTrailText("Negotiators leave <strong>Bonn</strong> without a deal");
+        Article space = article("space", 2000);
+        space.setArticleTitle("Rocket launch delayed");
+        space.setAuthorName("Jane Climber");
+        store.upsert("environment", Collections.singletonList(climate));
+        store.upsert("science", Collections.singletonList(space));
+
+        assertEquals(Arrays.asList("space", "climate"), urls(store.search("clim", 10)));
+        assertEquals(Collections.singletonList("climate"), urls(store.search("bonn deal", 10)));
+        assertEquals(Collections.singletonList("space"), urls(store.search("  jane\"", 10)));
+        assertTrue(store.search("", 10).isEmpty());
+        //the markup of the trail text isn't indexed
+        assertTrue(store.search("strong", 10).isEmpty());
+    }
+
+    @Test
+    public void search_findsReplacedArticleOnlyByItsNewText() {
+        store.upsert("science", Collections.singletonList(article("s1", 1000)));
+        Article updated = article("s1", 1000);
+        updated.setArticleTitle("updated title");
+        store.upsert("science", Collections.singletonList(updated));
+
+        assertEquals(Collections.singletonList("s1"), urls(store.search("updated", 10)));
+        assertTrue(store.search("s1", 10).isEmpty());
+    }
+
+    @Test
+    public void buildMatch_keepsOnlyWordsAsPrefixes() {
+        assertEquals("climate* talks*", ArticleStore.buildMatch("climate \"talks\""));
+        assertEquals("", ArticleStore.buildMatch(" - * "));
+    }
+
+    @Test
+    public void requery_ofSixSectionsIsFast() {
+        List<String> sections = Arrays.asList("cities", "environment", "global-development", "science", "technology", "world");
+        for (int section = 0; section < sections.size(); section++) {
+            List<Article> articles = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                articles.add(article(sections.get(section) + "/" + i, (i * sections.size() + section) * 60000L));
+            }
+            store.upsert(sections.get(section), articles);
+        }
+
+        //changing the order and the selected categories, as the settings screen would
+        long start = System.nanoTime();
+        List<Article> newest = store.query(sections, true, 60, 0);
+        List<Article> oldest = store.query(sections.subList(0, 3), false, 30, 0);
+        long elapsed = System.nanoTime() - start;
+        Log.i(TAG, "two queries of 6000 stored articles: " + elapsed / 1000 + " us");
+
+        assertEquals(60, newest.size());
+        assertEquals(30, oldest.size());
+        assertEquals("world/999", newest.get(0).getArticleUrl());
+        assertEquals("cities/0", oldest.get(0).getArticleUrl());
+    }
+
+    private static Article article(String url, long publicationMillis) {
+        Article article = new Article();
+        article.setArticleUrl(url);
+        article.setArticleTitle(url);
+        article.setPublicationMillis(publicationMillis);
+        return article;
+    }
+
+    private static List<String> urls(List<Article> articles) {
+        List<String> urls = new ArrayList<>();
+        for (Article article : articles) {
+            urls.add(article.getArticleUrl());
+        }
+        return urls;
+    }
+}
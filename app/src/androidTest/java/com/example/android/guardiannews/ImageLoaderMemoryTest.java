@@ -0,0 +1,204 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.widget.ImageView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads the thumbnails of a long list through an ImageLoader with a small memory budget, and checks that the decoded
+ * bitmaps never take more memory than the budget, so scrolling a long list can't run a low-RAM device out of memory.
+ * The images are 500x300 PNG files (the size of the Guardian thumbnails) loaded through file urls.
+ * The bytes held are logged with the tag ImageLoaderMemoryTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageLoaderMemoryTest {
+    private static final String TAG = "ImageLoaderMemoryTest";
+    private static final int IMAGE_WIDTH = 500;
+    private static final int IMAGE_HEIGHT = 300;
+    private static final int THUMBNAIL_WIDTH = 120;
+    private static final int THUMBNAIL_HEIGHT = 72;
+    private static final int MEMORY_BUDGET = 512 * 1024; /* bytes */
+    private static final int LIST_SIZE = 200;
+
+    private File imageDirectory;
+    private File cacheDirectory;
+    private ExecutorService executor;
+    private ImageLoader loader;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        imageDirectory = new File(context.getCacheDir(), "test_images");
+        cacheDirectory = new File(context.getCacheDir(), "test_thumbnails");
+        imageDirectory.mkdirs();
+        executor = Executors.newSingleThreadExecutor();
+        loader = new ImageLoader(cacheDirectory, MEMORY_BUDGET, ImageLoader.DEFAULT_DISK_MAX_SIZE, executor, 1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        deleteDirectory(imageDirectory);
+        deleteDirectory(cacheDirectory);
+    }
+
+    @Test
+    public void memoryBudget_isAFractionOfTheHeap() {
+        int budget = ImageLoader.memoryBudget(InstrumentationRegistry.getTargetContext());
+
+        assertTrue(budget > 0);
+        assertTrue(budget <= Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    @Test
+    public void longList_staysWithinTheMemoryBudget() throws IOException {
+        File image = writeImage("thumbnail.png");
+        long heapBefore = usedHeap();
+
+        //every row has its own url, like the articles of a long list
+        for (int i = 0; i < LIST_SIZE; i++) {
+            File rowImage = new File(imageDirectory, "thumbnail_" + i + ".png");
+            copy(image, rowImage);
+            Bitmap bitmap = loader.loadBitmap(rowImage.toURI().toString(), THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+            assertNotNull(bitmap);
+            assertTrue("cache holds " + loader.memoryCacheSize() + " bytes", loader.memoryCacheSize() <= MEMORY_BUDGET);
+        }
+
+        Log.i(TAG, LIST_SIZE + " thumbnails: memory cache " + loader.memoryCacheSize() + " of " + MEMORY_BUDGET
+                + " bytes, heap grew by " + (usedHeap() - heapBefore) + " bytes");
+        //the budget is full, the bitmaps of the rows scrolled past have been evicted
+        assertTrue(loader.memoryCacheSize() > MEMORY_BUDGET / 2);
+    }
+
+    @Test
+    public void decodeSampled_decodesAboutTheSizeOfTheView() throws IOException {
+        File image = writeImage("thumbnail.png");
+
+        Bitmap bitmap = ImageLoader.decodeSampled(image, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+
+        //sampled by 4: the largest power of two that keeps it bigger than the view
+        assertEquals(IMAGE_WIDTH / 4, bitmap.getWidth());
+        assertEquals(IMAGE_HEIGHT / 4, bitmap.getHeight());
+        assertEquals(Bitmap.Config.RGB_565, bitmap.getConfig());
+    }
+
+    @Test
+    public void inSampleSize() {
+        assertEquals(1, ImageLoader.inSampleSize(500, 300, 500, 300));
+        assertEquals(2, ImageLoader.inSampleSize(500, 300, 200, 120));
+        assertEquals(4, ImageLoader.inSampleSize(500, 300, 120, 72));
+        assertEquals(1, ImageLoader.inSampleSize(500, 300, 0, 0));
+    }
+
+    @Test
+    public void memoryCache_isKeyedByTheDecodedSize() throws IOException {
+        String url = writeImage("thumbnail.png").toURI().toString();
+
+        Bitmap small = loader.loadBitmap(url, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+        Bitmap large = loader.loadBitmap(url, IMAGE_WIDTH, IMAGE_HEIGHT);
+
+        //the bitmap decoded for the small view isn't shown in a view that needs the full image
+        assertEquals(IMAGE_WIDTH / 4, small.getWidth());
+        assertEquals(IMAGE_WIDTH, large.getWidth());
+        assertSame(small, loader.loadBitmap(url, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT));
+    }
+
+    @Test
+    public void cancelledRequest_doesNotSetTheImage() throws Exception {
+        final String firstUrl = writeImage("first.png").toURI().toString();
+        final String secondUrl = writeImage("second.png").toURI().toString();
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final ImageView[] views = new ImageView[2];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                //the first row is recycled before its image is loaded, the second one keeps its request
+                views[0] = new ImageView(context);
+                views[1] = new ImageView(context);
+                ImageLoader.Request first = loader.newRequest(views[0]);
+                first.load(firstUrl, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+                first.cancel();
+                loader.newRequest(views[1]).load(secondUrl, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+            }
+        });
+        //the single thread takes the requests one after the other, then their images are posted to the main thread
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (views[1].getDrawable() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+
+        assertNull(views[0].getDrawable());
+        assertNotNull(views[1].getDrawable());
+    }
+
+    //a 500x300 image, like the thumbnails of the Guardian API
+    private File writeImage(String name) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.DKGRAY);
+        File file = new File(imageDirectory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+        bitmap.recycle();
+        return file;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        FileOutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
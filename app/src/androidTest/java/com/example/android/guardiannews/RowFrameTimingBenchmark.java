@@ -0,0 +1,166 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Flings a list of 200 articles with the rows inflated from list_item.xml and with the rows drawn by ArticleRowView,
+ * and compares the time of their frames. A frame is the work of the main thread: scrolling the list by a fast fling's
+ * distance, which creates, binds, measures and lays out the rows coming into view, then drawing the list.
+ * The list isn't attached to a window, it is laid out at the size of a phone screen and drawn into a bitmap,
+ * so the numbers leave out the render thread but don't depend on the vsync of the device.
+ * Run it on a device and read the numbers from logcat (tag RowFrameTimingBenchmark).
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowFrameTimingBenchmark {
+    private static final String TAG = "RowFrameTimingBenchmark";
+    private static final String FIXTURE = "guardian_search_50.json";
+    private static final int LIST_SIZE = 200;
+    private static final int LIST_WIDTH_DP = 360;
+    private static final int LIST_HEIGHT_DP = 640;
+    //the distance a fast fling scrolls in one frame
+    private static final int FLING_STEP_DP = 150;
+    private static final long FRAME_BUDGET_NANOS = 16666667;
+
+    private List<Article> articles;
+    private FrameTimes xmlRows;
+    private FrameTimes customRows;
+
+    @Test
+    public void compareXmlAndCustomRows() throws IOException {
+        articles = readArticles();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                //the first flings load the classes and create the strings of the articles
+                fling(false);
+                fling(true);
+
+                xmlRows = fling(false);
+                customRows = fling(true);
+            }
+        });
+
+        Log.i(TAG, "xml rows:    " + xmlRows);
+        Log.i(TAG, "custom rows: " + customRows);
+        //both lists have been scrolled to their end
+        assertEquals(LIST_SIZE - 1, xmlRows.lastPosition);
+        assertEquals(LIST_SIZE - 1, customRows.lastPosition);
+    }
+
+    //fling a new list of the articles from the top to the bottom, and time each frame
+    private FrameTimes fling(boolean custom) {
+        Context context = InstrumentationRegistry.getTargetContext();
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int width = Math.round(LIST_WIDTH_DP * metrics.density);
+        int height = Math.round(LIST_HEIGHT_DP * metrics.density);
+        int step = Math.round(FLING_STEP_DP * metrics.density);
+
+        RecyclerView list = new RecyclerView(context);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+        list.setLayoutManager(layoutManager);
+        ArticleAdapter adapter = new ArticleAdapter(context, new ArrayList<>(articles), new ArticleAdapter.OnItemClickListener() {
+            @Override
+            public void onItemClick(Article articleListItem) {
+            }
+        });
+        adapter.setCustomRows(custom);
+        list.setAdapter(adapter);
+        list.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        list.layout(0, 0, width, height);
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        List<Long> frames = new ArrayList<>();
+        while (layoutManager.findLastVisibleItemPosition() < articles.size() - 1) {
+            long start = System.nanoTime();
+            list.scrollBy(0, step);
+            list.draw(canvas);
+            frames.add(System.nanoTime() - start);
+        }
+        bitmap.recycle();
+        return new FrameTimes(frames, layoutManager.findLastVisibleItemPosition());
+    }
+
+    private static class FrameTimes {
+        final long[] nanos;
+        final int lastPosition;
+
+        FrameTimes(List<Long> frames, int lastPosition) {
+            nanos = new long[frames.size()];
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] = frames.get(i);
+            }
+            Arrays.sort(nanos);
+            this.lastPosition = lastPosition;
+        }
+
+        int framesOverBudget() {
+            int count = 0;
+            for (long frame : nanos) {
+                if (frame > FRAME_BUDGET_NANOS) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        long percentile(int percent) {
+            return nanos[Math.min(nanos.length - 1, nanos.length * percent / 100)];
+        }
+
+        @Override
+        public String toString() {
+            return nanos.length + " frames, median " + percentile(50) / 1000 + " us, 90th percentile "
+                    + percentile(90) / 1000 + " us, max " + nanos[nanos.length - 1] / 1000 + " us, "
+                    + framesOverBudget() + " frames over 16 ms";
+        }
+    }
+
+    //the articles of the fixture repeated up to the size of the list, their texts prepared like the diff thread does
+    private static List<Article> readArticles() throws IOException {
+        List<Article> articles = new ArrayList<>();
+        while (articles.size() < LIST_SIZE) {
+            for (Article article : readFixtureArticles()) {
+                if (articles.size() < LIST_SIZE) {
+                    article.setDisplayTrailText(RowTextPreparer.formatTrailText(article.getTrailText()));
+                    articles.add(article);
+                }
+            }
+        }
+        return articles;
+    }
+
+    //the fixture is packaged with the test apk, not with the app
+    private static List<Article> readFixtureArticles() throws IOException {
+        AssetManager assets = InstrumentationRegistry.getContext().getAssets();
+        InputStream in = assets.open(FIXTURE);
+        try {
+            return ArticleStreamParser.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.guardiannews;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.style.StyleSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the HTML trail texts of the API are turned into the texts shown in the rows:
+ * the styles are kept, the links, the images and the trailing line breaks are removed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowTextPreparerTest {
+
+    @Test
+    public void plainText_isKeptAsItIs() {
+        String trailText = "Scientists find water on Mars";
+
+        assertSame(trailText, RowTextPreparer.formatTrailText(trailText));
+        assertNull(RowTextPreparer.formatTrailText(null));
+    }
+
+    @Test
+    public void styles_areKept() {
+        CharSequence text = RowTextPreparer.formatTrailText("Water on <strong>Mars</strong>");
+
+        assertEquals("Water on Mars", text.toString());
+        //a SpannedString isn't copied by TextView.setText
+        assertTrue(text instanceof SpannedString);
+        StyleSpan[] styles = ((Spanned) text).getSpans(0, text.length(), StyleSpan.class);
+        assertEquals(1, styles.length);
+        assertEquals("Mars", text.subSequence(((Spanned) text).getSpanStart(styles[0]), text.length()).toString());
+    }
+
+    @Test
+    public void linksImagesAndLineBreaks_areRemoved() {
+        CharSequence text = RowTextPreparer.formatTrailText(
+                "<p>Read <a href=\"https://www.theguardian.com/science\">more</a><img src=\"x.png\"> &amp; more</p><br>");
+
+        assertEquals("Read more & more", text.toString());
+        assertTrue(text instanceof String);
+    }
+}
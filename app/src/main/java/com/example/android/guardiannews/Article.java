@@ -1,76 +1,194 @@
 package com.example.android.guardiannews;
 
 import android.support.annotation.NonNull;
-
-import static com.example.android.guardiannews.MainActivity.CATEGORY_CITY;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_ENVIRONMENT;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_GLOBAL_DEVELOPMENT;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_SCIENCE;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_TECH;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_WORLD;
+import android.text.StaticLayout;
 
 public class Article implements Comparable<Article> {
 
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    //the time of publication in milliseconds since the epoch, the list is sorted by this value
+    private long publicationMillis;
+    //the date and time shown in the list, formatted from publicationMillis when the row is first bound
     private String publicationDate;
     private String publicationTime;
+    //the author line shown in the list, created once from the author name
+    private String authorLabel;
     private String articleTitle;
     private String articleUrl;
     private String trailText;
+    //the trail text shown in the list, prepared from the HTML of trailText before the row is bound
+    private CharSequence displayTrailText;
+    //the title and the trail text laid out for the custom rows on the diff thread, null until they are measured
+    private volatile StaticLayout titleLayout;
+    private volatile StaticLayout trailTextLayout;
     private String authorName;
-    private String category;
-
-    //constants indicating article categories
-    private final String TECHNOLOGY = "Technology";
-    private final String SCIENCE = "Science";
-    private final String CITIES = "Cities";
-    private final String WORLD = "World news";
-    private final String GLOBAL_DEV = "Global development";
-    private final String ENVIRONMENT = "Environment";
+    //the url of the thumbnail image of the article, null if it has none
+    private String thumbnailUrl;
+    //the id of the category in the CategoryRegistry
+    private int categoryId;
 
     //implements Comparable interface's method
     public int compareTo(@NonNull Article other) {
-        //compare articles based on date of publication
-        //if dates are the same than compare them based on time of publication
-        if (publicationDate.equals(other.getPublicationDate())) {
-            return publicationTime.compareTo(other.getPublicationTime());
+        //compare articles based on the time of publication, down to the second
+        //(Long.compare is not available before API 19)
+        if (publicationMillis < other.publicationMillis) {
+            return -1;
         }
-        return publicationDate.compareTo(other.getPublicationDate());
+        return publicationMillis == other.publicationMillis ? 0 : 1;
     }
 
     // Constructs a new Article object containing data extracted from the Guardian API
 
     Article() {
+        this.publicationMillis = 0;
         this.publicationDate = null;
         this.publicationTime = null;
         this.articleTitle = null;
         this.articleUrl = null;
         this.trailText = null;
         this.authorName = null;
-        this.category = null;
+        this.thumbnailUrl = null;
+        this.categoryId = CategoryRegistry.UNKNOWN;
     }
 
-    public String getPublicationDate() {
-        return publicationDate;
+    //check if the other article shows the same content as this one
+    boolean hasSameContent(Article other) {
+        return equalStrings(articleUrl, other.articleUrl)
+                && publicationMillis == other.publicationMillis
+                && equalStrings(articleTitle, other.articleTitle)
+                && equalStrings(trailText, other.trailText)
+                && equalStrings(authorName, other.authorName)
+                && equalStrings(thumbnailUrl, other.thumbnailUrl)
+                && categoryId == other.categoryId;
+    }
+
+    private static boolean equalStrings(String first, String second) {
+        return first == null ? second == null : first.equals(second);
     }
 
-    public void setPublicationDate(String publicationDate) {
-        this.publicationDate = publicationDate;
+    public long getPublicationMillis() {
+        return publicationMillis;
+    }
+
+    public void setPublicationMillis(long publicationMillis) {
+        this.publicationMillis = publicationMillis;
+        this.publicationDate = null;
+        this.publicationTime = null;
+    }
+
+    //the publication date in yyyy-MM-dd format, as the Guardian API gives it (UTC)
+    public String getPublicationDate() {
+        if (publicationDate == null) {
+            publicationDate = formatDate(publicationMillis);
+        }
+        return publicationDate;
     }
 
+    //the publication time in HH:mm format (UTC)
     public String getPublicationTime() {
+        if (publicationTime == null) {
+            publicationTime = formatTime(publicationMillis);
+        }
         return publicationTime;
     }
 
-    public void setPublicationTime(String publicationTime) {
-        this.publicationTime = publicationTime;
+    //convert a webPublicationDate of the Guardian API (e.g. 2018-10-04T16:30:12Z) to milliseconds since the epoch
+    //the fields are read straight from their fixed positions, so no date format or calendar is created for each article
+    //return 0 if the date is malformed
+    static long parsePublicationDate(String webPublicationDate) {
+        if (webPublicationDate == null || webPublicationDate.length() < 19) {
+            return 0;
+        }
+        int year = readNumber(webPublicationDate, 0, 4);
+        int month = readNumber(webPublicationDate, 5, 7);
+        int day = readNumber(webPublicationDate, 8, 10);
+        int hour = readNumber(webPublicationDate, 11, 13);
+        int minute = readNumber(webPublicationDate, 14, 16);
+        int second = readNumber(webPublicationDate, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || minute < 0 || second < 0) {
+            return 0;
+        }
+        return daysFromEpoch(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60 + minute) * 60 + second) * 1000L;
+    }
+
+    //read the decimal number between the start and end index, return -1 if it has any other character
+    private static int readNumber(String text, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    //the number of days between 1970-01-01 and the given date of the Gregorian calendar
+    private static long daysFromEpoch(int year, int month, int day) {
+        //the year is counted from March, so the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static String formatDate(long millis) {
+        //the inverse of daysFromEpoch
+        long z = floorDiv(millis, MILLIS_PER_DAY) + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder builder = new StringBuilder(10);
+        builder.append(year).append('-');
+        appendTwoDigits(builder, month).append('-');
+        appendTwoDigits(builder, day);
+        return builder.toString();
+    }
+
+    private static String formatTime(long millis) {
+        long minuteOfDay = (millis - floorDiv(millis, MILLIS_PER_DAY) * MILLIS_PER_DAY) / MILLIS_PER_MINUTE;
+        StringBuilder builder = new StringBuilder(5);
+        appendTwoDigits(builder, (int) (minuteOfDay / 60)).append(':');
+        appendTwoDigits(builder, (int) (minuteOfDay % 60));
+        return builder.toString();
+    }
+
+    //division rounding towards negative infinity, so dates before 1970 are formatted too (Math.floorDiv needs API 24)
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return (dividend % divisor < 0) ? quotient - 1 : quotient;
     }
 
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int number) {
+        if (number < 10) {
+            builder.append('0');
+        }
+        return builder.append(number);
+    }
+
+    //the name of the category shown in the list
     public String getCategory() {
-        return category;
+        return CategoryRegistry.get().nameOf(categoryId);
+    }
+
+    public int getCategoryId() {
+        return categoryId;
     }
 
-    public void setCategory(String category) {
-        this.category = category;
+    public void setCategoryId(int categoryId) {
+        this.categoryId = categoryId;
     }
 
     public String getArticleTitle() {
@@ -95,6 +213,33 @@ public class Article implements Comparable<Article> {
 
     public void setTrailText(String trailText) {
         this.trailText = trailText;
+        this.displayTrailText = null;
+    }
+
+    //the prepared trail text, or the raw one if it hasn't been prepared
+    CharSequence getDisplayTrailText() {
+        return displayTrailText != null ? displayTrailText : trailText;
+    }
+
+    boolean hasDisplayTrailText() {
+        return displayTrailText != null;
+    }
+
+    void setDisplayTrailText(CharSequence displayTrailText) {
+        this.displayTrailText = displayTrailText;
+    }
+
+    StaticLayout getTitleLayout() {
+        return titleLayout;
+    }
+
+    StaticLayout getTrailTextLayout() {
+        return trailTextLayout;
+    }
+
+    void setRowLayouts(StaticLayout titleLayout, StaticLayout trailTextLayout) {
+        this.titleLayout = titleLayout;
+        this.trailTextLayout = trailTextLayout;
     }
 
     public String getAuthorName() {
@@ -103,24 +248,28 @@ public class Article implements Comparable<Article> {
 
     public void setAuthorName(String authorName) {
         this.authorName = authorName;
+        this.authorLabel = null;
     }
 
-    public int getCategoryCase() {
-        switch (category) {
-            case TECHNOLOGY:
-                return CATEGORY_TECH;
-            case SCIENCE:
-                return CATEGORY_SCIENCE;
-            case CITIES:
-                return CATEGORY_CITY;
-            case WORLD:
-                return CATEGORY_WORLD;
-            case GLOBAL_DEV:
-                return CATEGORY_GLOBAL_DEVELOPMENT;
-            case ENVIRONMENT:
-                return CATEGORY_ENVIRONMENT;
-            default:
-                return 0;
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    //the author name after the prefix (e.g. "by "), or null if the article has no author
+    //the label is created on the first call, later calls return the same string
+    String getAuthorLabel(String prefix) {
+        if (authorLabel == null && authorName != null) {
+            authorLabel = prefix + authorName;
         }
+        return authorLabel;
+    }
+
+    //the category is resolved when the article is parsed, so this is only a field read
+    public int getCategoryCase() {
+        return categoryId;
     }
 }
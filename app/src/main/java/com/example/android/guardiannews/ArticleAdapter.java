@@ -1,32 +1,55 @@
 package com.example.android.guardiannews;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.StaticLayout;
+import android.text.TextPaint;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-
-import static com.example.android.guardiannews.MainActivity.CATEGORY_CITY;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_ENVIRONMENT;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_GLOBAL_DEVELOPMENT;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_SCIENCE;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_TECH;
-import static com.example.android.guardiannews.MainActivity.CATEGORY_WORLD;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleViewHolder> {
-    private ArrayList<Article> articleList;  // the list type that will be passed to the adapter
+    //the rows inflated from list_item.xml, and the rows drawn by ArticleRowView
+    static final int VIEW_TYPE_XML_ROW = 0;
+    static final int VIEW_TYPE_CUSTOM_ROW = 1;
+
+    //the diffs of the submitted lists are calculated one after the other on this background thread
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private ArrayList<Article> articleList;  // the list type that will be passed to the adapter, as it is shown
+    private List<Article> latestList;  // the last submitted list, it is shown when its diff is applied
+    private int submitGeneration = 0;  // increased with every submitted list, to drop the diffs of older lists
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private Context context;
 
     //the custom listener that we added as an interface to the adapter,
     //This is an input parameter for the constructor, and has to be implemented by the activity
     private OnItemClickListener listener;
 
+    //resolved once, so binding a row doesn't look up resources
+    private final CategoryRegistry categories;
+    private final String authorPrefix;
+    private final ImageLoader imageLoader;
+    //the paints and the widths of the texts of a row, known when the first row is created
+    //the texts are measured with them on the diff thread, before their rows are bound
+    private volatile RowMetrics rowMetrics;
+    //true if the rows are drawn by ArticleRowView instead of being inflated from the xml layout
+    private boolean customRows = false;
+
     //abstract custom OnItemClickListener that has to be implemented when the adapter is constructed
     //the method is implemented within MainActivity.
     public interface OnItemClickListener {
@@ -36,18 +59,43 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
 
     //ViewHolder class for RecycleView
 //It defines all the views from the layout that will be used to show data
-    static class ArticleViewHolder extends RecyclerView.ViewHolder {
-        final TextView dateView;
+//The holder is the click listener of its row, so binding a row only changes the article it refers to
+//A row drawn by ArticleRowView has no TextViews, its texts are handed to the row view instead
+    static class ArticleViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        TextView dateView;
         TextView timeView;
         TextView categoryView;
         TextView titleView;
         TextView trailTextView;
         TextView authorView;
         View colorIndicatorView;
+        ImageView thumbnailView;
+        View textContainer;
         LinearLayout container;
+        //the custom row, null if the row is inflated from the xml layout
+        final ArticleRowView rowView;
+
+        //the names and the resolved colors of the categories, indexed by the category id
+        private final CategoryRegistry categories;
+        private final OnItemClickListener listener;
+        //the article shown in the row
+        private Article article;
+        //loads the thumbnails of the row, reused for each article the row shows
+        private final ImageLoader.Request thumbnailRequest;
 
-        ArticleViewHolder(View itemView) {
+        ArticleViewHolder(View itemView, CategoryRegistry categories, OnItemClickListener listener, ImageLoader imageLoader) {
             super(itemView);
+            this.categories = categories;
+            this.listener = listener;
+
+            if (itemView instanceof ArticleRowView) {
+                rowView = (ArticleRowView) itemView;
+                thumbnailView = rowView.getThumbnailView();
+                thumbnailRequest = imageLoader.newRequest(thumbnailView);
+                rowView.setOnClickListener(this);
+                return;
+            }
+            rowView = null;
 
             dateView = itemView.findViewById(R.id.date);
             timeView = itemView.findViewById(R.id.time);
@@ -56,16 +104,85 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
             trailTextView = itemView.findViewById(R.id.trail_text);
             authorView = itemView.findViewById(R.id.author);
             colorIndicatorView = itemView.findViewById(R.id.color_indicator);
+            thumbnailView = itemView.findViewById(R.id.thumbnail);
+            textContainer = itemView.findViewById(R.id.list_item);
             container = itemView.findViewById(R.id.container);
+            thumbnailRequest = imageLoader.newRequest(thumbnailView);
+
+            //sets listener on the article list item that will be implemented when the adapter is called
+            container.setOnClickListener(this);
+        }
+
+        //show the article in the row, the texts of the article have been prepared by the adapter
+        void bind(Article articleItem, String authorPrefix) {
+            article = articleItem;
+
+            if (rowView != null) {
+                int categoryId = articleItem.getCategoryCase();
+                rowView.bind(articleItem.getPublicationDate(), articleItem.getPublicationTime(),
+                        categories.nameOf(categoryId), categories.colorOf(categoryId), articleItem.getAuthorLabel(authorPrefix),
+                        articleItem.getArticleTitle(), articleItem.getDisplayTrailText(),
+                        articleItem.getTitleLayout(), articleItem.getTrailTextLayout());
+                showThumbnail(articleItem.getThumbnailUrl());
+                return;
+            }
+
+            dateView.setText(articleItem.getPublicationDate());
+            timeView.setText(articleItem.getPublicationTime());
+            int categoryId = articleItem.getCategoryCase();
+            categoryView.setText(categories.nameOf(categoryId));
+            titleView.setText(articleItem.getArticleTitle());
+            trailTextView.setText(articleItem.getDisplayTrailText());
+            //a recycled row may still show the author of its previous article
+            String authorLabel = articleItem.getAuthorLabel(authorPrefix);
+            authorView.setText(authorLabel != null ? authorLabel : "");
+
+            //set the color of the views according to the category
+            int categoryColor = categories.colorOf(categoryId);
+            categoryView.setTextColor(categoryColor);
+            colorIndicatorView.setBackgroundColor(categoryColor);
+
+            showThumbnail(articleItem.getThumbnailUrl());
         }
 
+        //load the thumbnail in the size of its view, the image of the previous article of the row is not shown any more
+        //a row bound again to the same article keeps its thumbnail
+        private void showThumbnail(String thumbnailUrl) {
+            if (thumbnailUrl == null) {
+                cancelThumbnail();
+                thumbnailView.setVisibility(View.GONE);
+                return;
+            }
+            thumbnailView.setVisibility(View.VISIBLE);
+            ViewGroup.LayoutParams size = thumbnailView.getLayoutParams();
+            thumbnailRequest.load(thumbnailUrl, size.width, size.height);
+        }
+
+        //stop loading the thumbnail of the row, e.g. when the row is recycled
+        void cancelThumbnail() {
+            thumbnailRequest.cancel();
+        }
+
+        @Override
+        public void onClick(View v) {
+            if (article != null) {
+                listener.onItemClick(article);
+            }
+        }
     }
 
     //CONSTRUCTOR
     ArticleAdapter(Context context, ArrayList<Article> articleList, OnItemClickListener listener) {
         this.articleList = articleList;
+        this.latestList = new ArrayList<>(articleList);
         this.context = context;
         this.listener = listener;
+        this.authorPrefix = context.getString(R.string.author_pre_tag);
+        this.imageLoader = ImageLoader.getInstance(context);
+
+        //the names and colors of the categories come from the resources
+        ArticleQueries.loadCategories(context);
+        categories = CategoryRegistry.get();
     }
 
     //Overriding the 3 abstract methods of RecyclerView.Adapter superclass
@@ -76,6 +193,23 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
         return articleList.size();
     }
 
+    @Override
+    public int getItemViewType(int position) {
+        return customRows ? VIEW_TYPE_CUSTOM_ROW : VIEW_TYPE_XML_ROW;
+    }
+
+    //draw the rows with ArticleRowView instead of inflating them from the xml layout
+    //the rows shown are created again with the other view type
+    public void setCustomRows(boolean customRows) {
+        if (this.customRows == customRows) {
+            return;
+        }
+        this.customRows = customRows;
+        //the texts of the other rows have other paints
+        rowMetrics = null;
+        notifyDataSetChanged();
+    }
+
     //this method is called when the custom ViewHolder needs to be initialized.
     @NonNull
     @Override
@@ -84,9 +218,57 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
         // This is done by inflating the layout using LayoutInflater,
         // passing the output to the constructor of the custom ViewHolder.
 
-        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+        View view;
+        if (viewType == VIEW_TYPE_CUSTOM_ROW) {
+            view = new ArticleRowView(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        } else {
+            view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+        }
+
+        ArticleViewHolder holder = new ArticleViewHolder(view, categories, listener, imageLoader);
+        //the list has its width once it is laid out
+        if (rowMetrics == null && parent.getWidth() > 0) {
+            captureRowMetrics(holder, parent.getWidth());
+        }
+        return holder;
+    }
+
+    //measure the new row at the width of the list, and keep the width and the paints of its texts
+    //the articles submitted before the first row existed are measured with them now
+    private void captureRowMetrics(ArticleViewHolder holder, int listWidth) {
+        if (holder.rowView != null) {
+            ArticleRowView rowView = holder.rowView;
+            measureSubmittedTexts(new RowMetrics(new TextPaint(rowView.getTitlePaint()),
+                    new TextPaint(rowView.getTrailTextPaint()), rowView.textWidthOf(listWidth), rowView.getThumbnailSpace(), true));
+            return;
+        }
 
-        return new ArticleViewHolder(view);
+        holder.itemView.measure(View.MeasureSpec.makeMeasureSpec(listWidth, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        View textContainer = holder.textContainer;
+        int textWidth = textContainer.getMeasuredWidth() - textContainer.getPaddingLeft() - textContainer.getPaddingRight();
+        ViewGroup.MarginLayoutParams thumbnailParams = (ViewGroup.MarginLayoutParams) holder.thumbnailView.getLayoutParams();
+        RowMetrics metrics = new RowMetrics(new TextPaint(holder.titleView.getPaint()),
+                new TextPaint(holder.trailTextView.getPaint()), textWidth,
+                thumbnailParams.width + thumbnailParams.leftMargin + thumbnailParams.rightMargin, false);
+        measureSubmittedTexts(metrics);
+    }
+
+    //keep the metrics for the lists submitted later, and measure the texts of the list submitted before them
+    private void measureSubmittedTexts(final RowMetrics metrics) {
+        rowMetrics = metrics;
+
+        final List<Article> submitted = latestList;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Article article : submitted) {
+                    metrics.measure(article);
+                }
+            }
+        });
     }
 
     //Override the onBindViewHolder to specify the contents of each item of the RecyclerView.
@@ -94,59 +276,22 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
     public void onBindViewHolder(@NonNull ArticleViewHolder holder,
                                  int position)    //position of the list item
         {
-        //get the actual item's position with the superclass' get method
-        final Article articleItem = articleList.get(position);
-
-        assert articleItem != null;
-
-        holder.dateView.setText(articleItem.getPublicationDate());
-        holder.timeView.setText(articleItem.getPublicationTime());
-        holder.categoryView.setText(articleItem.getCategory());
-        holder.titleView.setText(articleItem.getArticleTitle());
-        holder.trailTextView.setText(articleItem.getTrailText());
-        String authorName = articleItem.getAuthorName();
-        if (authorName != null) {
-            String nameToDisplay = getContext().getResources().getString(R.string.author_pre_tag) + articleItem.getAuthorName();
-            holder.authorView.setText(nameToDisplay);
-        }
-
-        int categoryColor;
-        //pick the color according to category
-        switch (articleItem.getCategoryCase()) {
-            case CATEGORY_TECH:
-                categoryColor = getColorResource(R.color.colorCase1);
-                break;
-            case CATEGORY_CITY:
-                categoryColor = getColorResource(R.color.colorCase2);
-                break;
-            case CATEGORY_SCIENCE:
-                categoryColor = getColorResource(R.color.colorCase3);
-                break;
-            case CATEGORY_WORLD:
-                categoryColor = getColorResource(R.color.colorCase4);
-                break;
-            case CATEGORY_ENVIRONMENT:
-                categoryColor = getColorResource(R.color.colorCase5);
-                break;
-            case CATEGORY_GLOBAL_DEVELOPMENT:
-                categoryColor = getColorResource(R.color.colorCase6);
-                break;
-
-            default:
-                categoryColor = getColorResource(R.color.colorPrimaryText);
-
-        }
-        //set the color of the views
-        holder.categoryView.setTextColor(categoryColor);
-        holder.colorIndicatorView.setBackgroundColor(categoryColor);
-
-        //sets listener on the article list item that will be implemented when the adapter is called
-        holder.container.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                listener.onItemClick(articleItem);
-            }
-        });
+        long bindStart = PerfTrace.begin(PerfTrace.BIND);
+        try {
+            //get the actual item's position with the superclass' get method
+            //nothing is allocated here: the texts were prepared when the list was submitted
+            holder.bind(articleList.get(position), authorPrefix);
+        } finally {
+            PerfTrace.end(PerfTrace.BIND, bindStart);
+        }
+    }
+
+    //a recycled row doesn't wait for the thumbnail of its old article, and doesn't keep its bitmap
+    @Override
+    public void onViewRecycled(@NonNull ArticleViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.cancelThumbnail();
+        holder.thumbnailView.setImageDrawable(null);
     }
 
     //Overriding the onAttachedToRecyclerView method.
@@ -160,15 +305,175 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
         return context;
     }
 
+    //remove every article from the list at once, e.g. when the loader is reset
     public void clearList() {
+        //a diff that is still being calculated belongs to an old list, so it must not be applied
+        submitGeneration++;
+        latestList = new ArrayList<>();
         articleList.clear();
+        notifyDataSetChanged();
+    }
+
+    //replace the list with the new articles
+    //the difference between the two lists is calculated on a background thread, then only the inserted,
+    //removed and changed rows are notified, so the unchanged rows keep their views and the scroll position
+    public void submitList(List<Article> data) {
+        final int generation = ++submitGeneration;
+        final List<Article> oldList = new ArrayList<>(articleList);
+        final List<Article> newList = new ArrayList<>(data);
+        latestList = newList;
+
+        //there is nothing to prepare or compare in an empty list
+        if (newList.isEmpty()) {
+            articleList.clear();
+            notifyDataSetChanged();
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepareTexts(newList);
+
+                //there is nothing to compare with an empty list
+                final DiffUtil.DiffResult diffResult;
+                long diffStart = PerfTrace.begin(PerfTrace.DIFF);
+                try {
+                    diffResult = oldList.isEmpty() ? null
+                            : DiffUtil.calculateDiff(new ArticleDiffCallback(oldList, newList));
+                } finally {
+                    PerfTrace.end(PerfTrace.DIFF, diffStart);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //a newer list has been submitted while the diff was calculated
+                        if (generation != submitGeneration) {
+                            return;
+                        }
+                        articleList.clear();
+                        articleList.addAll(newList);
+                        if (diffResult != null) {
+                            diffResult.dispatchUpdatesTo(ArticleAdapter.this);
+                        } else {
+                            notifyDataSetChanged();
+                        }
+                    }
+                });
+            }
+        });
     }
 
-    public void addAllToList(List<Article> data) {
-        articleList.addAll(data);
+    //create the texts shown in the rows before the articles are bound, on the diff thread
+    //each text is created only once per article, so scrolling the list doesn't allocate or parse them again,
+    //and the new texts are measured at the width of the row once it is known
+    private void prepareTexts(List<Article> articles) {
+        RowMetrics metrics = rowMetrics;
+        for (Article article : articles) {
+            article.getPublicationDate();
+            article.getPublicationTime();
+            article.getAuthorLabel(authorPrefix);
+            if (!article.hasDisplayTrailText()) {
+                article.setDisplayTrailText(RowTextPreparer.formatTrailText(article.getTrailText()));
+                if (metrics != null) {
+                    metrics.measure(article);
+                }
+            }
+        }
     }
 
-    private int getColorResource(int colorResource) {
-        return getContext().getResources().getColor(colorResource);
+    //the paints of the title and the trail text of a row, and the width they are laid out in
+    //the paints are copies, so they can be used on the diff thread while the views draw with theirs
+    private static final class RowMetrics {
+        private final TextPaint titlePaint;
+        private final TextPaint trailTextPaint;
+        //the width of the texts in a row without a thumbnail
+        private final int textWidth;
+        //the width the thumbnail takes from the texts
+        private final int thumbnailSpace;
+        //true for the custom rows, which draw the layouts kept with the articles
+        //the xml rows lay out their texts themselves, for them the layouts only warm the text layout cache
+        private final boolean keepLayouts;
+
+        RowMetrics(TextPaint titlePaint, TextPaint trailTextPaint, int textWidth, int thumbnailSpace, boolean keepLayouts) {
+            this.titlePaint = titlePaint;
+            this.trailTextPaint = trailTextPaint;
+            this.textWidth = textWidth;
+            this.thumbnailSpace = thumbnailSpace;
+            this.keepLayouts = keepLayouts;
+        }
+
+        void measure(Article article) {
+            int width = article.getThumbnailUrl() != null ? textWidth - thumbnailSpace : textWidth;
+            StaticLayout titleLayout = RowTextPreparer.measure(article.getArticleTitle(), titlePaint, width);
+            StaticLayout trailTextLayout = RowTextPreparer.measure(article.getDisplayTrailText(), trailTextPaint, width);
+            article.setRowLayouts(keepLayouts ? titleLayout : null, keepLayouts ? trailTextLayout : null);
+        }
+    }
+
+    //add the articles to the end of the list, leaving out the ones already in it
+    //they are added to the last submitted list, even if its diff is not applied yet
+    public void appendToList(List<Article> data) {
+        Set<String> shownUrls = new HashSet<>();
+        for (Article article : latestList) {
+            shownUrls.add(article.getArticleUrl());
+        }
+
+        List<Article> newList = new ArrayList<>(latestList);
+        for (Article article : data) {
+            if (shownUrls.add(article.getArticleUrl())) {
+                newList.add(article);
+            }
+        }
+        submitList(newList);
+    }
+
+    //replace the first page of the list with a refreshed one, the articles of the following pages are kept after it
+    //an article that is in the new first page too is shown only once, at its place in the new first page
+    public void refreshFirstPage(List<Article> firstPage) {
+        Set<String> firstPageUrls = new HashSet<>();
+        for (Article article : firstPage) {
+            firstPageUrls.add(article.getArticleUrl());
+        }
+
+        List<Article> newList = new ArrayList<>(firstPage);
+        for (Article article : latestList) {
+            if (!firstPageUrls.contains(article.getArticleUrl())) {
+                newList.add(article);
+            }
+        }
+        submitList(newList);
+    }
+
+    //DiffUtil callback identifying the articles by their url
+    private static class ArticleDiffCallback extends DiffUtil.Callback {
+        private final List<Article> oldList;
+        private final List<Article> newList;
+
+        ArticleDiffCallback(List<Article> oldList, List<Article> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            String oldUrl = oldList.get(oldItemPosition).getArticleUrl();
+            return oldUrl != null && oldUrl.equals(newList.get(newItemPosition).getArticleUrl());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).hasSameContent(newList.get(newItemPosition));
+        }
     }
 }
@@ -0,0 +1,242 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.example.android.guardiannews.MainActivity.TAG;
+
+//Disk cache of the parsed article lists, keyed by the full query url
+//Entries older than the time-to-live are still returned, but marked as stale so they get revalidated,
+//and the least recently used entries are deleted when the cache grows over its size limit
+final class ArticleDiskCache {
+    static final long DEFAULT_TTL = 15 * 60 * 1000; /* milliseconds */
+    static final long DEFAULT_MAX_SIZE = 1024 * 1024; /* bytes */
+
+    private static final String CACHE_DIRECTORY = "articles";
+    private static final int FORMAT_VERSION = 4;
+
+    private static ArticleDiskCache instance;
+
+    private final File directory;
+    private final long ttl;
+    private final long maxSize;
+
+    //a cached article list, together with the time it was downloaded
+    static class Entry {
+        final List<Article> articles;
+        final long storedAt;
+
+        Entry(List<Article> articles, long storedAt) {
+            this.articles = articles;
+            this.storedAt = storedAt;
+        }
+    }
+
+    ArticleDiskCache(File directory, long ttl, long maxSize) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    //the cache shared by the whole app, stored in the app's cache directory
+    static synchronized ArticleDiskCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY);
+            instance = new ArticleDiskCache(directory, DEFAULT_TTL, DEFAULT_MAX_SIZE);
+        }
+        return instance;
+    }
+
+    boolean isStale(Entry entry) {
+        return System.currentTimeMillis() - entry.storedAt > ttl;
+    }
+
+    //return the cached articles of the query url, or null if there is no entry for it
+    Entry get(String url) {
+        return get(url, new StringPool());
+    }
+
+    //the repeated values of the articles are deduplicated through the pool of the load
+    synchronized Entry get(String url, StringPool pool) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION || !url.equals(in.readUTF())) {
+                return null;
+            }
+            long storedAt = in.readLong();
+            int count = in.readInt();
+            List<Article> articles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                articles.add(readArticle(in, pool));
+            }
+
+            //mark the entry as recently used
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(articles, storedAt);
+        } catch (IOException e) {
+            Log.e(TAG, "Problem reading the article cache. ", e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    //store the articles of the query url, then evict the least recently used entries if the cache is too big
+    synchronized void put(String url, List<Article> articles) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+
+        //write into a temporary file first, so a half-written entry is never read
+        File file = fileFor(url);
+        File temporaryFile = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(url);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(articles.size());
+            for (Article article : articles) {
+                writeArticle(out, article);
+            }
+            out.close();
+            out = null;
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing the article cache. ", e);
+            temporaryFile.delete();
+        } finally {
+            closeQuietly(out);
+        }
+
+        trimToSize(directory, maxSize);
+    }
+
+    //delete the least recently used files of the directory until it is not bigger than maxSize
+    //the files are marked as used by their last-modified time
+    static void trimToSize(File directory, long maxSize) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+
+        //the oldest last-modified time belongs to the least recently used entry
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static Article readArticle(DataInputStream in, StringPool pool) throws IOException {
+        Article article = new Article();
+        article.setPublicationMillis(in.readLong());
+        //the ids of the categories may be different in another process, so the section is stored
+        String sectionId = readNullableString(in);
+        String sectionName = readNullableString(in);
+        article.setCategoryId(CategoryRegistry.get().idOf(sectionId, sectionName));
+        article.setArticleTitle(readNullableString(in));
+        article.setArticleUrl(readNullableString(in));
+        article.setTrailText(readNullableString(in));
+        article.setAuthorName(pool.intern(readNullableString(in)));
+        article.setThumbnailUrl(readNullableString(in));
+        return article;
+    }
+
+    private static void writeArticle(DataOutputStream out, Article article) throws IOException {
+        out.writeLong(article.getPublicationMillis());
+        CategoryRegistry categories = CategoryRegistry.get();
+        writeNullableString(out, categories.sectionIdOf(article.getCategoryId()));
+        writeNullableString(out, categories.nameOf(article.getCategoryId()));
+        writeNullableString(out, article.getArticleTitle());
+        writeNullableString(out, article.getArticleUrl());
+        writeNullableString(out, article.getTrailText());
+        writeNullableString(out, article.getAuthorName());
+        writeNullableString(out, article.getThumbnailUrl());
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    //the file name is the hash of the query url, as the url itself is too long and has illegal characters
+    private File fileFor(String url) {
+        return new File(directory, fileNameOf(url));
+    }
+
+    //the hex MD5 hash of the url
+    static String fileNameOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            //MD5 is available on every Android device
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                //nothing to do, the data is already read or written
+            }
+        }
+    }
+}
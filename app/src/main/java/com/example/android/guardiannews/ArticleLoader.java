@@ -1,21 +1,60 @@
 package com.example.android.guardiannews;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.content.AsyncTaskLoader;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-
-import static com.example.android.guardiannews.ArticleUtils.fetchArticleData;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
+    private static final int FETCH_POOL_SIZE = 6;    //one thread for each article category
+    private static final long FETCH_DEADLINE = 30000; /* milliseconds, for the whole batch of queries */
+
+    //the fetch engine is shared by all loaders, so the thread pool is created only once
+    private static final ParallelFetcher<Article> fetcher = new ParallelFetcher<>(FETCH_POOL_SIZE, FETCH_DEADLINE);
+
     private ArrayList<String> urls = null;     //the list of query urls received as parameter for the loader
-    private List<Article> articleList;    //this is the variable for the list of articles
+    private final boolean newestFirst;    //the order of the queried articles, the lists of the urls are merged in this order
+    private final boolean progressive;    //true if the downloaded categories are delivered one by one, as they arrive
+    //the list of articles delivered to the UI, written on the main thread
+    //loadInBackground reads it to know whether the cache has been delivered and to compare the revalidated articles
+    private volatile List<Article> articleList;
+    private final ArticleDiskCache cache;    //the articles of earlier queries, kept on the disk
+    private final ArticleStore store;    //every downloaded article, queried by category and order
+
+    //true when the delivered articles came from stale cache entries, so they have to be downloaded again
+    private volatile boolean needsRevalidation = false;
+    //true while the download that revalidates the delivered cached articles is running
+    private volatile boolean revalidating = false;
+
+    //the partial lists of the progressive mode are delivered on the main thread
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //increased by every download, a partial list is delivered only while its download is the latest one
+    private final AtomicInteger downloadCount = new AtomicInteger();
+    //the last download that has finished, its partial lists are replaced by its result
+    private volatile int finishedDownload = 0;
+    //the number of categories still being downloaded after the delivered partial list, 0 when the list is complete
+    private int pendingSections = 0;
 
     //public constructor calling the superclass' (AsyncTaskLoader's) method
-    //The second parameter is a single String queryUrl, as in the app we use only one url address
-    ArticleLoader(Context context, ArrayList<String> queryUrl) {
+    //The second parameter is the list of query urls, each asking for one or more of the categories selected by the user
+    //The third parameter is the order-by of the queries, newest first or oldest first
+    //The fourth parameter turns on the progressive delivery: each downloaded category is merged into the list
+    //and delivered right away, so the list shows up as fast as the fastest category instead of the slowest one
+    ArticleLoader(Context context, ArrayList<String> queryUrl, boolean newestFirst, boolean progressive) {
         super(context);
+        cache = ArticleDiskCache.getInstance(context);
+        store = ArticleStore.getInstance(context);
+        //the parsed articles get the categories of the settings
+        ArticleQueries.loadCategories(context);
+        this.newestFirst = newestFirst;
+        this.progressive = progressive;
 
         //return early if queryUrl is empty
         if (queryUrl != null) {
@@ -26,23 +65,219 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
     //implementing the superclass' abstract method
     @Override
     public List<Article> loadInBackground() {
-        articleList = new ArrayList<>();
-        for (int i = 0; i < (urls.size()); i++) {
-            //pass each url from the list of query urls
-            //the queries are made for specific categories like technology, cities, etc. selected by the user
-            //fetch the data from the server and create a list of specific Articles
-            List<Article> categoryArticles = fetchArticleData(urls.get(i));
+        //the articles of the categories share the instances of their repeated values, e.g. the contributor names
+        final StringPool pool = new StringPool();
+
+        //on the first load show the cached articles right away, if every query has been cached earlier
+        if (!revalidating && articleList == null) {
+            List<Article> cachedArticles = loadFromCache(pool);
+            if (cachedArticles != null) {
+                return cachedArticles;
+            }
+            //the queries have changed (e.g. a different order or category selection), but their articles may be stored
+            List<Article> storedArticles = loadFromStore();
+            if (storedArticles != null) {
+                return storedArticles;
+            }
+        }
 
-            //check if the list of specific articles is not empty
-            if (categoryArticles != null) {
-                //add the elements to the list of all articles
-                articleList.addAll(categoryArticles);
+        List<Article> downloadedArticles = new ArrayList<>();
+        //while revalidating, the cached articles of every category are shown, a partial list would hide some of them
+        SectionProgress progress = progressive && !revalidating && urls.size() > 1 ? new SectionProgress(urls.size()) : null;
+        try {
+            //send the queries of all the categories selected by the user (technology, cities, etc.) at the same time
+            //fetch the data from the server, every query comes back sorted in the requested order
+            List<List<Article>> categoryLists = fetcher.fetchEach(urls, new ParallelFetcher.Fetch<Article>() {
+                @Override
+                public List<Article> fetch(String url) {
+                    //a cached first page is refreshed with the articles published since its newest one
+                    List<Article> categoryArticles = DeltaSync.download(url, newestFirst, cache, null, pool);
+                    if (categoryArticles != null) {
+                        cache.put(url, categoryArticles);
+                        ArticleQueries.storeArticles(store, url, categoryArticles);
+                        return categoryArticles;
+                    }
+                    //if the download failed, the cached articles of the category are still better than nothing
+                    ArticleDiskCache.Entry entry = cache.get(url, pool);
+                    return entry != null ? entry.articles : null;
+                }
+            }, progress);
+            //merge the sorted lists of the categories into one sorted list
+            long mergeStart = PerfTrace.begin(PerfTrace.MERGE);
+            try {
+                downloadedArticles = ArticleMerger.merge(categoryLists, newestFirst);
+            } finally {
+                PerfTrace.end(PerfTrace.MERGE, mergeStart);
             }
+        } catch (InterruptedException e) {
+            //the loader was abandoned, there is nobody waiting for the result
+            Thread.currentThread().interrupt();
+        }
+        if (progress != null) {
+            progress.finish();
+        }
 
+        //when nothing has changed since the cached articles were delivered, return the same list
+        //so deliverResult knows that the UI doesn't have to be updated
+        List<Article> deliveredArticles = articleList;
+        if (revalidating && deliveredArticles != null && hasSameContent(deliveredArticles, downloadedArticles)) {
+            return deliveredArticles;
         }
 
         //return list of articles
-        return articleList;
+        return downloadedArticles;
+    }
+
+    //read the cached articles of every query url
+    //return null if any of the queries is missing from the cache
+    private List<Article> loadFromCache(StringPool pool) {
+        List<List<Article>> cachedLists = new ArrayList<>(urls.size());
+        boolean stale = false;
+        for (String url : urls) {
+            ArticleDiskCache.Entry entry = cache.get(url, pool);
+            if (entry == null) {
+                return null;
+            }
+            stale |= cache.isStale(entry);
+            cachedLists.add(entry.articles);
+        }
+        needsRevalidation = stale;
+        long mergeStart = PerfTrace.begin(PerfTrace.MERGE);
+        try {
+            return ArticleMerger.merge(cachedLists, newestFirst);
+        } finally {
+            PerfTrace.end(PerfTrace.MERGE, mergeStart);
+        }
+    }
+
+    //read the first page of the queried categories from the article store
+    //return null if it is not the first page or any of the categories has never been downloaded
+    private List<Article> loadFromStore() {
+        if (urls.isEmpty() || ArticleQueries.pageOf(urls.get(0)) != 1) {
+            return null;
+        }
+        List<String> sectionIds = new ArrayList<>();
+        for (String url : urls) {
+            sectionIds.addAll(ArticleQueries.sectionsOf(url));
+        }
+        long lastFetched = store.lastFetched(sectionIds);
+        if (lastFetched == 0) {
+            return null;
+        }
+        //download the categories again if the stored articles are older than the articles of the disk cache would be
+        needsRevalidation = System.currentTimeMillis() - lastFetched > ArticleDiskCache.DEFAULT_TTL;
+
+        //each query reads its own page, so a busy category doesn't crowd the others out of the list,
+        //and the pages are merged like the downloaded ones
+        List<List<Article>> storedLists = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            storedLists.add(store.query(ArticleQueries.sectionsOf(url), newestFirst, ArticleQueries.pageSizeOf(url), 0));
+        }
+        long mergeStart = PerfTrace.begin(PerfTrace.MERGE);
+        try {
+            return ArticleMerger.merge(storedLists, newestFirst);
+        } finally {
+            PerfTrace.end(PerfTrace.MERGE, mergeStart);
+        }
+    }
+
+    //the articles are matched by their url, so the comparison doesn't depend on the order of the lists
+    private static boolean hasSameContent(List<Article> first, List<Article> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        Map<String, Article> firstByUrl = new HashMap<>();
+        for (Article article : first) {
+            firstByUrl.put(article.getArticleUrl(), article);
+        }
+        for (Article article : second) {
+            Article match = firstByUrl.get(article.getArticleUrl());
+            if (match == null || !match.hasSameContent(article)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //the number of categories still being downloaded, when the delivered list holds only the categories already downloaded
+    int getPendingSections() {
+        return pendingSections;
+    }
+
+    //collects the categories of one download as they arrive, and delivers the merged list of the categories so far
+    private class SectionProgress implements ParallelFetcher.Listener<Article> {
+        private final int download = downloadCount.incrementAndGet();
+        private final List<List<Article>> arrivedLists;
+        private int pending;
+
+        SectionProgress(int sections) {
+            arrivedLists = new ArrayList<>(Collections.<List<Article>>nCopies(sections, null));
+            pending = sections;
+        }
+
+        //called on the fetch threads
+        @Override
+        public synchronized void onFetched(int index, List<Article> items) {
+            pending--;
+            //the list with the last category is the result of the load
+            if (items == null || items.isEmpty() || pending == 0) {
+                return;
+            }
+            arrivedLists.set(index, items);
+            final List<Article> partialList;
+            long mergeStart = PerfTrace.begin(PerfTrace.MERGE);
+            try {
+                partialList = ArticleMerger.merge(arrivedLists, newestFirst);
+            } finally {
+                PerfTrace.end(PerfTrace.MERGE, mergeStart);
+            }
+            final int stillPending = pending;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliverPartialResult(download, partialList, stillPending);
+                }
+            });
+        }
+
+        //the categories that miss the deadline must not be delivered after the result
+        void finish() {
+            finishedDownload = download;
+        }
+    }
+
+    //deliver the categories downloaded so far, unless the download has finished or a newer one has started
+    private void deliverPartialResult(int download, List<Article> partialList, int stillPending) {
+        if (download != downloadCount.get() || download == finishedDownload || isAbandoned() || isReset()) {
+            return;
+        }
+        pendingSections = stillPending;
+        articleList = partialList;
+        super.deliverResult(partialList);
+    }
+
+    //this method is called on the main thread with the result of loadInBackground
+    @Override
+    public void deliverResult(List<Article> data) {
+        //the result holds every category
+        pendingSections = 0;
+        if (revalidating) {
+            revalidating = false;
+            if (data == articleList) {
+                //the downloaded articles are the same as the cached ones already shown, there is nothing to deliver
+                return;
+            }
+        }
+
+        articleList = data;
+        super.deliverResult(data);
+
+        //the cached articles are shown, now download them again in the background (stale-while-revalidate)
+        if (needsRevalidation) {
+            needsRevalidation = false;
+            revalidating = true;
+            forceLoad();
+        }
     }
 
     //this method is triggered automatically from initLoader when starting the background work
@@ -51,7 +286,7 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
         //check if articles data is already downloaded
         if (articleList != null) {
             // Use cached data
-            deliverResult(articleList);
+            super.deliverResult(articleList);
         } else {
             // If there is no available data, begin the download
             // forceLoad() triggers the implemented loadInBackground() method
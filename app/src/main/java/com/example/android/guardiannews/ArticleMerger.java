@@ -0,0 +1,97 @@
+package com.example.android.guardiannews;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+//Merges the article lists of the categories into the one list shown to the user
+//Every category is queried with the order-by of the settings, so its list is already sorted:
+//the lists are merged with a heap holding the next article of each list, which costs O(n log k) for k categories
+//instead of sorting the whole list again
+//An article tagged with more than one category is kept only at its first place, matched by url
+final class ArticleMerger {
+
+    private ArticleMerger() {
+    }
+
+    //merge the sorted lists, newest article first if newestFirst is true
+    //null lists (categories that failed to load) are skipped
+    static List<Article> merge(List<List<Article>> sortedLists, final boolean newestFirst) {
+        int size = 0;
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, sortedLists.size()));
+        for (int i = 0; i < sortedLists.size(); i++) {
+            List<Article> articles = sortedLists.get(i);
+            if (articles != null && !articles.isEmpty()) {
+                heap.add(new Cursor(articles, i, newestFirst));
+                size += articles.size();
+            }
+        }
+
+        List<Article> merged = new ArrayList<>(size);
+        Set<String> mergedUrls = new HashSet<>(size * 2);
+        while (!heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            Article article = cursor.current();
+            String url = article.getArticleUrl();
+            if (url == null || mergedUrls.add(url)) {
+                merged.add(article);
+            }
+            //put the list back with its next article, the same cursor object is reused
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    //merge the newly downloaded articles into the held newest-first list, and keep the newest limit articles
+    //an article found in both lists is taken from the delta, as it is the newer download
+    static List<Article> mergeDelta(List<Article> delta, List<Article> held, int limit) {
+        List<List<Article>> lists = new ArrayList<>(2);
+        lists.add(delta);
+        lists.add(held);
+        List<Article> merged = merge(lists, true);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    //the position of the next article to be merged from one of the lists
+    private static class Cursor implements Comparable<Cursor> {
+        private final List<Article> articles;
+        private final int listIndex;
+        private final boolean newestFirst;
+        private int position = 0;
+        private long currentMillis;
+
+        Cursor(List<Article> articles, int listIndex, boolean newestFirst) {
+            this.articles = articles;
+            this.listIndex = listIndex;
+            this.newestFirst = newestFirst;
+            this.currentMillis = articles.get(0).getPublicationMillis();
+        }
+
+        Article current() {
+            return articles.get(position);
+        }
+
+        boolean advance() {
+            position++;
+            if (position < articles.size()) {
+                currentMillis = articles.get(position).getPublicationMillis();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            if (currentMillis != other.currentMillis) {
+                boolean before = newestFirst ? currentMillis > other.currentMillis : currentMillis < other.currentMillis;
+                return before ? -1 : 1;
+            }
+            //articles published at the same time keep the order of the categories
+            return listIndex - other.listIndex;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Builds the query urls of the categories selected in the settings
+//MainActivity's loaders and the background sync use the same urls, so the articles downloaded by the sync
+//are found in the cache when the app is opened
+final class ArticleQueries {
+    private static final String API_KEY = "f308e9ec-fba1-4ab0-a97c-bb33a7b2ecbd";
+
+    //the query parameters read back from the urls
+    private static final String PARAM_SECTION = "section";
+    private static final String PARAM_PAGE_SIZE = "page-size";
+    private static final String PARAM_PAGE = "page";
+
+    private ArticleQueries() {
+    }
+
+    //create the query urls of the categories selected by the user, asking for the given page of the results
+    //every category has its own query by default, the settings can fold them into as few queries as possible
+    static ArrayList<String> buildQueryUrls(Context context, int page) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        //This is the default category list to be used if the preference key can't be found
+        HashSet<String> defaultCategorySelection = new HashSet<>(Arrays.asList(context.getResources().getStringArray(R.array.categories_default_values)));
+
+        //get the categories selected by the user (or the default selection)
+        Set<String> categoryKeySet = sharedPrefs.getStringSet(context.getString(R.string.settings_select_category_key), defaultCategorySelection);
+
+        // getString retrieves a String value from the preferences.
+        // The second parameter is the default value for this preference.
+        String defaultListLength = context.getString(R.string.settings_list_items_limit_default);
+        String listLength = sharedPrefs.getString(context.getString(R.string.settings_list_items_limit_key), defaultListLength);
+        int pageSize = parseInt(listLength, parseInt(defaultListLength, 0));
+
+        //the categories are queried one by one when each of them has to get its full number of articles
+        boolean perSection = sharedPrefs.getBoolean(context.getString(R.string.settings_per_section_queries_key),
+                context.getResources().getBoolean(R.bool.settings_per_section_queries_default));
+
+        //every category is queried in the order selected in the settings, so the loader only has to merge them
+        String orderBy = isNewestFirst(context) ? "newest" : "oldest";
+
+        // parse breaks apart the URI String that's passed into its parameter
+        Uri baseUri = Uri.parse(context.getString(R.string.base_url));
+
+        ArrayList<String> urlList = new ArrayList<>();
+        //this for-each loop creates a list of Uris - each for one planned query of the categories selected by the user
+        for (QueryPlanner.Query query : QueryPlanner.plan(categoryKeySet, pageSize, perSection)) {
+            // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
+            Uri.Builder uriBuilder = baseUri.buildUpon();
+
+            // Append query parameter and its value.
+            uriBuilder.appendQueryParameter(PARAM_SECTION, query.sectionParameter());
+            uriBuilder.appendQueryParameter("show-tags", "contributor");
+            uriBuilder.appendQueryParameter("show-fields", "trailText,thumbnail");
+            uriBuilder.appendQueryParameter(PARAM_PAGE_SIZE, String.valueOf(query.pageSize));
+            uriBuilder.appendQueryParameter("order-by", orderBy);
+            uriBuilder.appendQueryParameter(PARAM_PAGE, String.valueOf(page));
+            uriBuilder.appendQueryParameter("api-key", API_KEY);
+
+            // Add the complete Uri to the list of query urls
+            urlList.add(uriBuilder.toString());
+        }
+        return urlList;
+    }
+
+    //load the categories of the settings into the CategoryRegistry, only the first call does anything
+    //the section ids, the names and the colors are the category arrays of the resources,
+    //so a new category only needs a new item in each of them
+    static void loadCategories(Context context) {
+        CategoryRegistry registry = CategoryRegistry.get();
+        if (registry.isLoaded()) {
+            return;
+        }
+        Resources resources = context.getResources();
+        String[] sectionIds = resources.getStringArray(R.array.category_preference_keys);
+        int defaultColor = resources.getColor(R.color.colorPrimaryText);
+        int[] colors = new int[sectionIds.length];
+        TypedArray colorArray = resources.obtainTypedArray(R.array.category_colors);
+        try {
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = colorArray.getColor(i, defaultColor);
+            }
+        } finally {
+            colorArray.recycle();
+        }
+        registry.load(sectionIds, colors, defaultColor);
+    }
+
+    //the categories (section ids) of a query url
+    static List<String> sectionsOf(String queryUrl) {
+        return QueryPlanner.splitSections(Uri.parse(queryUrl).getQueryParameter(PARAM_SECTION));
+    }
+
+    //save the downloaded articles of a query url in the store, under their own categories
+    //the articles of a combined query are split by their category first
+    static void storeArticles(ArticleStore store, String queryUrl, List<Article> articles) {
+        List<String> sectionIds = sectionsOf(queryUrl);
+        if (sectionIds.size() == 1) {
+            store.upsert(sectionIds.get(0), articles);
+            return;
+        }
+        for (Map.Entry<String, List<Article>> section : QueryPlanner.splitBySection(articles).entrySet()) {
+            store.upsert(section.getKey(), section.getValue());
+        }
+    }
+
+    //the number of articles asked for by a query url, together for all of its categories
+    static int pageSizeOf(String queryUrl) {
+        return parseInt(Uri.parse(queryUrl).getQueryParameter(PARAM_PAGE_SIZE), 0);
+    }
+
+    //the page of the results asked for by a query url
+    static int pageOf(String queryUrl) {
+        return parseInt(Uri.parse(queryUrl).getQueryParameter(PARAM_PAGE), 1);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    //check if the articles are shown in the order of the publication date decreasing, as selected in the settings
+    static boolean isNewestFirst(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String orderBy = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+        return !MainActivity.ORDER_BY_OLDEST.equals(orderBy);
+    }
+}
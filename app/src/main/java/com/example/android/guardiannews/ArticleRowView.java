@@ -0,0 +1,319 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.TypedValue;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.ImageView;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+//A list row that measures and draws its texts itself, instead of the nested layouts and the six TextViews of list_item.xml
+//It looks like the xml row: the category stripe on the left, the thumbnail, then the date, time and author
+//in the first line, the category, the title and the trail text below them
+//The single-line texts are drawn straight onto the canvas, the title and the trail text are wrapped with StaticLayouts
+//The layouts are built on the diff thread and kept with the article, so binding a row to another article doesn't
+//measure its texts on the main thread. A layout built for another width is replaced by one the row builds itself
+//The thumbnail is the only child view, so the ImageLoader can load into it like into the xml row
+//The drawn texts aren't views, so the row describes them to the accessibility services itself
+final class ArticleRowView extends ViewGroup {
+    //the stripe is as wide as the color indicator view of the xml row
+    private static final int STRIPE_WIDTH_DP = 5;
+
+    private final TextPaint smallPaint;
+    private final TextPaint categoryPaint;
+    private final TextPaint titlePaint;
+    private final TextPaint trailTextPaint;
+    private final Paint stripePaint = new Paint();
+    private final ImageView thumbnailView;
+    //the category names in upper case, like the all caps category TextView of the xml row shows them
+    //they are created once for each category, so binding a row doesn't allocate them again
+    private final Map<String, String> upperCaseCategories = new HashMap<>();
+
+    private final int padding;
+    private final int gap;
+    private final int stripeWidth;
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+
+    //the texts of the bound article
+    private String date;
+    private String time;
+    private String category;
+    //the category as the article names it, read by the accessibility services instead of the upper case one
+    private String categoryName;
+    private String author;
+    private CharSequence title;
+    private CharSequence trailText;
+    //measured when the article is bound, so drawing doesn't measure
+    private float dateWidth;
+    private float timeWidth;
+    //the author as it fits next to the date and the time, shortened with an ellipsis by onMeasure if it is too long
+    private CharSequence shownAuthor;
+    private float shownAuthorWidth;
+
+    //the layouts prepared on the diff thread for the bound article, null if they aren't ready
+    private StaticLayout preparedTitleLayout;
+    private StaticLayout preparedTrailTextLayout;
+    //the layouts drawn
+    private StaticLayout titleLayout;
+    private StaticLayout trailTextLayout;
+    //where the texts start, set by onMeasure
+    private int textLeft;
+
+    ArticleRowView(Context context) {
+        super(context);
+        setWillNotDraw(false);
+        Resources resources = context.getResources();
+        padding = resources.getDimensionPixelSize(R.dimen.margin_s);
+        gap = resources.getDimensionPixelSize(R.dimen.margin_s);
+        stripeWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, STRIPE_WIDTH_DP,
+                resources.getDisplayMetrics());
+        thumbnailWidth = resources.getDimensionPixelSize(R.dimen.thumbnail_width);
+        thumbnailHeight = resources.getDimensionPixelSize(R.dimen.thumbnail_height);
+
+        //the title has the primary text color of the theme, the other texts the default color of the TextViews
+        //the category is drawn in the color of its category, set when the article is bound
+        TypedArray attributes = context.obtainStyledAttributes(
+                new int[]{android.R.attr.textColorPrimary, android.R.attr.textColorSecondary});
+        int titleColor = attributes.getColor(0, Color.BLACK);
+        int textColor = attributes.getColor(1, Color.GRAY);
+        attributes.recycle();
+
+        smallPaint = createPaint(resources.getDimension(R.dimen.text_size_s), textColor);
+        categoryPaint = createPaint(resources.getDimension(R.dimen.text_size_m), textColor);
+        titlePaint = createPaint(resources.getDimension(R.dimen.text_size_l), titleColor);
+        titlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        trailTextPaint = createPaint(resources.getDimension(R.dimen.text_size_m), textColor);
+
+        thumbnailView = new ImageView(context);
+        thumbnailView.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        thumbnailView.setVisibility(GONE);
+        addView(thumbnailView, new LayoutParams(thumbnailWidth, thumbnailHeight));
+    }
+
+    private static TextPaint createPaint(float textSize, int color) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(textSize);
+        paint.setColor(color);
+        return paint;
+    }
+
+    ImageView getThumbnailView() {
+        return thumbnailView;
+    }
+
+    TextPaint getTitlePaint() {
+        return titlePaint;
+    }
+
+    TextPaint getTrailTextPaint() {
+        return trailTextPaint;
+    }
+
+    //the space the thumbnail takes from the texts
+    int getThumbnailSpace() {
+        return thumbnailWidth + gap;
+    }
+
+    //the width of the wrapped texts in a row of the given width, without a thumbnail
+    int textWidthOf(int rowWidth) {
+        return rowWidth - padding - stripeWidth - gap - padding;
+    }
+
+    //show the texts of an article, with the layouts of the title and the trail text if they are prepared
+    //the texts are laid out again only if the title, the trail text or the author has changed
+    void bind(String date, String time, String category, int categoryColor, String author,
+              CharSequence title, CharSequence trailText, StaticLayout titleLayout, StaticLayout trailTextLayout) {
+        preparedTitleLayout = titleLayout;
+        preparedTrailTextLayout = trailTextLayout;
+        this.date = date;
+        this.time = time;
+        this.category = upperCaseOf(category);
+        categoryName = category;
+        dateWidth = date != null ? smallPaint.measureText(date) : 0;
+        timeWidth = time != null ? smallPaint.measureText(time) : 0;
+        categoryPaint.setColor(categoryColor);
+        stripePaint.setColor(categoryColor);
+
+        if (title != this.title || trailText != this.trailText || author != this.author) {
+            this.title = title;
+            this.trailText = trailText;
+            this.author = author;
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    //the texts of the row are described when an accessibility service asks for them, so binding doesn't build them
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setContentDescription(describe());
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        event.getText().add(describe());
+    }
+
+    //the title first, then the category, the author, the date and the time
+    private String describe() {
+        StringBuilder description = new StringBuilder();
+        appendDescription(description, title);
+        appendDescription(description, categoryName);
+        appendDescription(description, author);
+        appendDescription(description, date);
+        appendDescription(description, time);
+        return description.toString();
+    }
+
+    private static void appendDescription(StringBuilder description, CharSequence text) {
+        if (TextUtils.isEmpty(text)) {
+            return;
+        }
+        if (description.length() > 0) {
+            description.append(", ");
+        }
+        description.append(text);
+    }
+
+    private String upperCaseOf(String category) {
+        if (category == null) {
+            return null;
+        }
+        String upperCase = upperCaseCategories.get(category);
+        if (upperCase == null) {
+            upperCase = category.toUpperCase(Locale.getDefault());
+            upperCaseCategories.put(category, upperCase);
+        }
+        return upperCase;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        boolean hasThumbnail = thumbnailView.getVisibility() != GONE;
+        if (hasThumbnail) {
+            thumbnailView.measure(MeasureSpec.makeMeasureSpec(thumbnailWidth, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(thumbnailHeight, MeasureSpec.EXACTLY));
+        }
+
+        textLeft = padding + stripeWidth + (hasThumbnail ? getThumbnailSpace() : 0) + gap;
+        int textWidth = Math.max(0, width - textLeft - padding);
+        titleLayout = layoutOf(preparedTitleLayout, titleLayout, title, titlePaint, textWidth);
+        trailTextLayout = layoutOf(preparedTrailTextLayout, trailTextLayout, trailText, trailTextPaint, textWidth);
+        fitAuthor(textWidth - dateWidth - gap - timeWidth - gap);
+
+        int textHeight = lineHeight(smallPaint) + lineHeight(categoryPaint)
+                + heightOf(titleLayout) + heightOf(trailTextLayout);
+        int height = padding + Math.max(textHeight, hasThumbnail ? thumbnailHeight : 0) + padding;
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    //shorten the author with an ellipsis if it is wider than the space left by the date and the time
+    //a name that fits is drawn as it is, so only the long ones allocate a shortened copy
+    private void fitAuthor(float availableWidth) {
+        if (author == null || availableWidth <= 0) {
+            shownAuthor = null;
+            shownAuthorWidth = 0;
+            return;
+        }
+        float authorWidth = smallPaint.measureText(author);
+        if (authorWidth <= availableWidth) {
+            shownAuthor = author;
+            shownAuthorWidth = authorWidth;
+            return;
+        }
+        shownAuthor = TextUtils.ellipsize(author, smallPaint, availableWidth, TextUtils.TruncateAt.END);
+        shownAuthorWidth = smallPaint.measureText(shownAuthor, 0, shownAuthor.length());
+    }
+
+    //the prepared or the current layout if it shows the same text at the same width, a new one otherwise
+    @SuppressWarnings("deprecation")
+    private static StaticLayout layoutOf(StaticLayout prepared, StaticLayout current, CharSequence text,
+                                         TextPaint paint, int width) {
+        if (text == null || text.length() == 0) {
+            return null;
+        }
+        if (fits(prepared, text, width)) {
+            return prepared;
+        }
+        if (fits(current, text, width)) {
+            return current;
+        }
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+
+    private static boolean fits(StaticLayout layout, CharSequence text, int width) {
+        return layout != null && layout.getText() == text && layout.getWidth() == width;
+    }
+
+    private static int heightOf(StaticLayout layout) {
+        return layout != null ? layout.getHeight() : 0;
+    }
+
+    private static int lineHeight(Paint paint) {
+        return Math.round(paint.getFontMetrics(null));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        if (thumbnailView.getVisibility() != GONE) {
+            int thumbnailLeft = padding + stripeWidth + gap;
+            thumbnailView.layout(thumbnailLeft, padding, thumbnailLeft + thumbnailWidth, padding + thumbnailHeight);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawRect(padding, padding, padding + stripeWidth, getHeight() - padding, stripePaint);
+
+        //the first line: the date and the time on the left, the author on the right in the space left by them
+        float y = padding - smallPaint.ascent();
+        if (date != null) {
+            canvas.drawText(date, textLeft, y, smallPaint);
+        }
+        if (time != null) {
+            canvas.drawText(time, textLeft + dateWidth + gap, y, smallPaint);
+        }
+        if (shownAuthor != null) {
+            canvas.drawText(shownAuthor, 0, shownAuthor.length(), getWidth() - padding - shownAuthorWidth, y, smallPaint);
+        }
+
+        int top = padding + lineHeight(smallPaint);
+        if (category != null) {
+            canvas.drawText(category, textLeft, top - categoryPaint.ascent(), categoryPaint);
+        }
+        top += lineHeight(categoryPaint);
+
+        top = drawLayout(canvas, titleLayout, top);
+        drawLayout(canvas, trailTextLayout, top);
+    }
+
+    //draw the layout at the left of the texts, return the top of the text below it
+    private int drawLayout(Canvas canvas, StaticLayout layout, int top) {
+        if (layout == null) {
+            return top;
+        }
+        canvas.save();
+        canvas.translate(textLeft, top);
+        layout.draw(canvas);
+        canvas.restore();
+        return top + layout.getHeight();
+    }
+}
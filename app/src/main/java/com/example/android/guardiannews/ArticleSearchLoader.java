@@ -0,0 +1,42 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.List;
+
+//Loader searching the text of the stored articles
+//The search runs only on the local full-text index, it never goes to the network, so it also works offline
+public class ArticleSearchLoader extends AsyncTaskLoader<List<Article>> {
+    private static final int SEARCH_LIMIT = 100;    //the maximum number of articles shown as search result
+
+    private final String searchText;    //the text typed by the user
+    private final ArticleStore store;
+    private List<Article> articleList;    //the delivered search result
+
+    ArticleSearchLoader(Context context, String searchText) {
+        super(context);
+        this.searchText = searchText != null ? searchText : "";
+        store = ArticleStore.getInstance(context);
+    }
+
+    @Override
+    public List<Article> loadInBackground() {
+        return store.search(searchText, SEARCH_LIMIT);
+    }
+
+    @Override
+    public void deliverResult(List<Article> data) {
+        articleList = data;
+        super.deliverResult(data);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (articleList != null) {
+            super.deliverResult(articleList);
+        } else {
+            forceLoad();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.android.guardiannews;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//SQLite table of every downloaded article, keyed by its url
+//The list is read with an indexed query filtered by the selected categories and ordered by the publication time,
+//so changing the order or the categories in the settings is answered from the table without going to the network
+//The title, the trail text and the author are also indexed in an FTS4 table, so the stored articles can be searched offline
+//The trail text of the API is HTML, the index gets its text without the markup, so a search for "strong" doesn't match a tag
+//Each write keeps only the newest articles of its category, so the table doesn't grow with every download
+final class ArticleStore extends SQLiteOpenHelper {
+    //the articles kept of each category, more than the pages a user scrolls through
+    static final int DEFAULT_MAX_ARTICLES_PER_SECTION = 1000;
+
+    private static final String DATABASE_NAME = "articles.db";
+    private static final int DATABASE_VERSION = 4;
+
+    private static final String TABLE_ARTICLES = "articles";
+    private static final String COLUMN_URL = "url";
+    private static final String COLUMN_SECTION_ID = "section_id";
+    private static final String COLUMN_SECTION_NAME = "section_name";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_TRAIL_TEXT = "trail_text";
+    //the trail text without its HTML markup, only written to the search index
+    private static final String COLUMN_SEARCH_TRAIL_TEXT = "search_trail_text";
+    private static final String COLUMN_AUTHOR = "author";
+    private static final String COLUMN_THUMBNAIL = "thumbnail";
+    private static final String COLUMN_PUBLISHED = "published";
+    private static final String COLUMN_FETCHED_AT = "fetched_at";
+
+    //the full-text index of the shown text of the articles, its docid is the rowid of the article
+    private static final String TABLE_SEARCH = "articles_fts";
+
+    private static final String[] ARTICLE_COLUMNS = {COLUMN_URL, COLUMN_SECTION_NAME, COLUMN_TITLE,
+            COLUMN_TRAIL_TEXT, COLUMN_AUTHOR, COLUMN_PUBLISHED, COLUMN_SECTION_ID, COLUMN_THUMBNAIL};
+
+    private static ArticleStore instance;
+
+    //the number of articles kept of each category, 0 keeps every article
+    private final int maxArticlesPerSection;
+
+    ArticleStore(Context context, String databaseName) {
+        this(context, databaseName, DEFAULT_MAX_ARTICLES_PER_SECTION);
+    }
+
+    ArticleStore(Context context, String databaseName, int maxArticlesPerSection) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        this.maxArticlesPerSection = maxArticlesPerSection;
+    }
+
+    //the store shared by the whole app
+    static synchronized ArticleStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ArticleStore(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARTICLES + " ("
+                + COLUMN_URL + " TEXT PRIMARY KEY NOT NULL, "
+                + COLUMN_SECTION_ID + " TEXT NOT NULL, "
+                + COLUMN_SECTION_NAME + " TEXT, "
+                + COLUMN_TITLE + " TEXT, "
+                + COLUMN_TRAIL_TEXT + " TEXT, "
+                + COLUMN_SEARCH_TRAIL_TEXT + " TEXT, "
+                + COLUMN_AUTHOR + " TEXT, "
+                + COLUMN_THUMBNAIL + " TEXT, "
+                + COLUMN_PUBLISHED + " INTEGER NOT NULL, "
+                + COLUMN_FETCHED_AT + " INTEGER NOT NULL)");
+        //the list of all categories is ordered by the publication time
+        db.execSQL("CREATE INDEX articles_published ON " + TABLE_ARTICLES + " (" + COLUMN_PUBLISHED + ")");
+        //the list of the selected categories is filtered by the section, then ordered by the publication time
+        db.execSQL("CREATE INDEX articles_section_published ON " + TABLE_ARTICLES
+                + " (" + COLUMN_SECTION_ID + ", " + COLUMN_PUBLISHED + ")");
+
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SEARCH + " USING fts4("
+                + COLUMN_TITLE + ", " + COLUMN_TRAIL_TEXT + ", " + COLUMN_AUTHOR + ")");
+        //the triggers keep the index in sync with the article table
+        //INSERT OR REPLACE doesn't fire the delete trigger of the replaced row, so its index row is deleted before the insert
+        db.execSQL("CREATE TRIGGER articles_before_insert BEFORE INSERT ON " + TABLE_ARTICLES + " BEGIN "
+                + "DELETE FROM " + TABLE_SEARCH + " WHERE docid = "
+                + "(SELECT rowid FROM " + TABLE_ARTICLES + " WHERE " + COLUMN_URL + " = new." + COLUMN_URL + "); END");
+        db.execSQL("CREATE TRIGGER articles_after_insert AFTER INSERT ON " + TABLE_ARTICLES + " BEGIN "
+                + "INSERT INTO " + TABLE_SEARCH + " (docid, " + COLUMN_TITLE + ", " + COLUMN_TRAIL_TEXT + ", " + COLUMN_AUTHOR + ") "
+                + "VALUES (new.rowid, new." + COLUMN_TITLE + ", new." + COLUMN_SEARCH_TRAIL_TEXT + ", new." + COLUMN_AUTHOR + "); END");
+        db.execSQL("CREATE TRIGGER articles_after_delete AFTER DELETE ON " + TABLE_ARTICLES + " BEGIN "
+                + "DELETE FROM " + TABLE_SEARCH + " WHERE docid = old.rowid; END");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //the table only holds downloaded articles, they can be downloaded again
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SEARCH);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ARTICLES);
+        onCreate(db);
+    }
+
+    //insert the downloaded articles of a category, or replace them if they are already stored,
+    //then delete the oldest articles of the category beyond the limit
+    //the whole batch is written in one transaction, so the database file is synced only once
+    void upsert(String sectionId, List<Article> articles) {
+        if (sectionId == null || articles.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_ARTICLES + " ("
+                + COLUMN_URL + ", " + COLUMN_SECTION_ID + ", " + COLUMN_SECTION_NAME + ", " + COLUMN_TITLE + ", "
+                + COLUMN_TRAIL_TEXT + ", " + COLUMN_AUTHOR + ", " + COLUMN_PUBLISHED + ", " + COLUMN_FETCHED_AT + ", "
+                + COLUMN_THUMBNAIL + ", " + COLUMN_SEARCH_TRAIL_TEXT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        long fetchedAt = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (Article article : articles) {
+                if (article.getArticleUrl() == null) {
+                    continue;
+                }
+                statement.clearBindings();
+                statement.bindString(1, article.getArticleUrl());
+                statement.bindString(2, sectionId);
+                bindNullableString(statement, 3, article.getCategory());
+                bindNullableString(statement, 4, article.getArticleTitle());
+                bindNullableString(statement, 5, article.getTrailText());
+                bindNullableString(statement, 6, article.getAuthorName());
+                statement.bindLong(7, article.getPublicationMillis());
+                statement.bindLong(8, fetchedAt);
+                bindNullableString(statement, 9, article.getThumbnailUrl());
+                bindNullableString(statement, 10, searchTrailTextOf(article));
+                statement.executeInsert();
+            }
+            prune(db, sectionId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    //delete the articles of the category that are older than its newest maxArticlesPerSection ones
+    //the delete trigger removes them from the search index too
+    private void prune(SQLiteDatabase db, String sectionId) {
+        if (maxArticlesPerSection <= 0) {
+            return;
+        }
+        SQLiteStatement statement = db.compileStatement("DELETE FROM " + TABLE_ARTICLES
+                + " WHERE " + COLUMN_SECTION_ID + " = ? AND rowid NOT IN (SELECT rowid FROM " + TABLE_ARTICLES
+                + " WHERE " + COLUMN_SECTION_ID + " = ? ORDER BY " + COLUMN_PUBLISHED + " DESC LIMIT ?)");
+        try {
+            statement.bindString(1, sectionId);
+            statement.bindString(2, sectionId);
+            statement.bindLong(3, maxArticlesPerSection);
+            statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    //the trail text of the article as it is shown, without the HTML markup
+    //the list may have prepared it already, otherwise it is parsed here, on the thread of the loader
+    private static String searchTrailTextOf(Article article) {
+        CharSequence text = article.hasDisplayTrailText() ? article.getDisplayTrailText()
+                : RowTextPreparer.formatTrailText(article.getTrailText());
+        return text != null ? text.toString() : null;
+    }
+
+    //read one page of the articles of the given categories, in the order of the publication time
+    List<Article> query(Collection<String> sectionIds, boolean newestFirst, int limit, int offset) {
+        if (sectionIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String orderBy = COLUMN_PUBLISHED + (newestFirst ? " DESC" : " ASC");
+        Cursor cursor = getReadableDatabase().query(TABLE_ARTICLES, ARTICLE_COLUMNS,
+                sectionSelection(sectionIds.size()), sectionIds.toArray(new String[sectionIds.size()]),
+                null, null, orderBy, offset + ", " + limit);
+        return readArticles(cursor);
+    }
+
+    //find the stored articles whose title, trail text or author contains every word of the search text
+    //(the last word may be the beginning of a word), newest first
+    List<Article> search(String text, int limit) {
+        String match = buildMatch(text);
+        if (match.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder columns = new StringBuilder();
+        for (String column : ARTICLE_COLUMNS) {
+            columns.append(columns.length() == 0 ? "a." : ", a.").append(column);
+        }
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT " + columns + " FROM " + TABLE_ARTICLES + " a"
+                        + " JOIN " + TABLE_SEARCH + " ON a.rowid = " + TABLE_SEARCH + ".docid"
+                        + " WHERE " + TABLE_SEARCH + " MATCH ?"
+                        + " ORDER BY a." + COLUMN_PUBLISHED + " DESC LIMIT " + limit,
+                new String[]{match});
+        return readArticles(cursor);
+    }
+
+    //the FTS query of the search text: the letters and digits of every word, each matched as a prefix
+    //the other characters are left out, so the user can't type an invalid FTS query
+    static String buildMatch(String text) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+                word.setLength(0);
+            }
+        }
+        return match.toString();
+    }
+
+    //create the articles from the rows of a query of the ARTICLE_COLUMNS, then close the cursor
+    //the rows of one query share the instances of their repeated values
+    private static List<Article> readArticles(Cursor cursor) {
+        List<Article> articles = new ArrayList<>();
+        StringPool pool = new StringPool();
+        try {
+            while (cursor.moveToNext()) {
+                Article article = new Article();
+                article.setArticleUrl(cursor.getString(0));
+                article.setCategoryId(CategoryRegistry.get().idOf(cursor.getString(6), cursor.getString(1)));
+                article.setArticleTitle(cursor.getString(2));
+                article.setTrailText(cursor.getString(3));
+                article.setAuthorName(pool.intern(cursor.getString(4)));
+                article.setPublicationMillis(cursor.getLong(5));
+                article.setThumbnailUrl(cursor.getString(7));
+                articles.add(article);
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+
+    //return the time of the oldest download among the given categories,
+    //or 0 if any of them has never been downloaded
+    long lastFetched(Collection<String> sectionIds) {
+        if (sectionIds.isEmpty()) {
+            return 0;
+        }
+        Map<String, Long> fetchedAt = new HashMap<>();
+        Cursor cursor = getReadableDatabase().query(TABLE_ARTICLES,
+                new String[]{COLUMN_SECTION_ID, "MAX(" + COLUMN_FETCHED_AT + ")"},
+                sectionSelection(sectionIds.size()), sectionIds.toArray(new String[sectionIds.size()]),
+                COLUMN_SECTION_ID, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                fetchedAt.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        long oldest = Long.MAX_VALUE;
+        for (String sectionId : sectionIds) {
+            Long sectionFetchedAt = fetchedAt.get(sectionId);
+            if (sectionFetchedAt == null) {
+                return 0;
+            }
+            oldest = Math.min(oldest, sectionFetchedAt);
+        }
+        return oldest;
+    }
+
+    //delete every stored article
+    void clear() {
+        getWritableDatabase().delete(TABLE_ARTICLES, null, null);
+    }
+
+    //section_id IN (?, ?, ...) with one argument for each category
+    private static String sectionSelection(int count) {
+        StringBuilder selection = new StringBuilder(COLUMN_SECTION_ID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ", ?");
+        }
+        return selection.append(')').toString();
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.guardiannews;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+//Pull parser for the Guardian search response
+//It reads the json straight from the input stream, skips every field that is not shown in the list,
+//and creates the Article objects one by one, so the response is never held in memory as a whole
+//Gson's JsonReader has the same API as android.util.JsonReader, but it also runs on the JVM in the benchmarks
+final class ArticleStreamParser {
+
+    private ArticleStreamParser() {
+    }
+
+    //parse the whole response and return the list of articles in the order of the results
+    static List<Article> parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, null);
+    }
+
+    //the repeated values of the articles (the contributor names) are deduplicated through the pool of the load,
+    //a null pool keeps every value as it was read
+    static List<Article> parse(InputStream inputStream, StringPool pool) throws IOException {
+        List<Article> articleList = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            //the route to the fields we need is root -> response -> results
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("response")) {
+                    readResponse(reader, articleList, pool);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return articleList;
+    }
+
+    private static void readResponse(JsonReader reader, List<Article> articleList, StringPool pool) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("results")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    //add each article to the list as soon as it is read
+                    articleList.add(readArticle(reader, pool));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static Article readArticle(JsonReader reader, StringPool pool) throws IOException {
+        Article article = new Article();
+        String sectionId = null;
+        String sectionName = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "webPublicationDate":
+                    article.setPublicationMillis(Article.parsePublicationDate(readString(reader)));
+                    break;
+                case "sectionId":
+                    sectionId = readString(reader);
+                    break;
+                case "sectionName":
+                    sectionName = readString(reader);
+                    break;
+                case "webTitle":
+                    article.setArticleTitle(readString(reader));
+                    break;
+                case "webUrl":
+                    article.setArticleUrl(readString(reader));
+                    break;
+                case "fields":
+                    readFields(reader, article);
+                    break;
+                case "tags":
+                    String authorName = readAuthorName(reader);
+                    if (authorName != null && !authorName.isEmpty()) {
+                        article.setAuthorName(pool != null ? pool.intern(authorName) : authorName);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        //the category is looked up once here, the list only uses its id
+        article.setCategoryId(CategoryRegistry.get().idOf(sectionId, sectionName));
+        return article;
+    }
+
+    //the trail text and the thumbnail asked for with show-fields
+    private static void readFields(JsonReader reader, Article article) throws IOException {
+        String trailText = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "trailText":
+                    trailText = readString(reader);
+                    break;
+                case "thumbnail":
+                    String thumbnailUrl = readString(reader);
+                    if (!thumbnailUrl.isEmpty()) {
+                        article.setThumbnailUrl(thumbnailUrl);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        article.setTrailText(trailText);
+    }
+
+    //the author is the first contributor tag of the article, the other tags are skipped
+    private static String readAuthorName(JsonReader reader) throws IOException {
+        String authorName = null;
+        reader.beginArray();
+        if (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("webTitle")) {
+                    authorName = readString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return authorName;
+    }
+
+    //read a string value, a json null is read as an empty string like org.json's optString does
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return "";
+        }
+        return reader.nextString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.guardiannews;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.List;
+
+import static com.example.android.guardiannews.MainActivity.TAG;
+
+//Periodic background sync of the first page of the selected categories
+//The articles are downloaded with the same query urls as MainActivity's loader and written to the disk cache and the store,
+//so opening the app shows articles that are at most one sync interval old instead of a spinner
+//The job runs only on an unmetered network while the device is charging (and the battery is not low),
+//JobScheduler is available from API 21, the app only loads on demand on older devices
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ArticleSyncService extends JobService {
+    private static final int SYNC_JOB_ID = 1;
+    static final long SYNC_INTERVAL = 60 * 60 * 1000; /* milliseconds */
+
+    //the thread running the sync of the current job
+    private Thread syncThread;
+
+    //schedule the periodic sync, if it is not scheduled yet
+    //the caller checks the API level: on older devices loading this class fails, so its methods can't check it
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (jobScheduler == null) {
+            return;
+        }
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs()) {
+            if (pendingJob.getId() == SYNC_JOB_ID) {
+                return;
+            }
+        }
+
+        JobInfo.Builder builder = new JobInfo.Builder(SYNC_JOB_ID, new ComponentName(context, ArticleSyncService.class))
+                .setPeriodic(SYNC_INTERVAL)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setRequiresBatteryNotLow(true);
+        }
+        jobScheduler.schedule(builder.build());
+    }
+
+    //the job is started on the main thread, so the articles are downloaded on a new thread
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final Context context = getApplicationContext();
+        syncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean finished = sync(context);
+                //reschedule the job with backoff if it could not download every category
+                jobFinished(params, !finished);
+            }
+        }, "ArticleSync");
+        syncThread.start();
+        return true;
+    }
+
+    //the constraints are not met anymore (e.g. the charger was unplugged), stop the sync and retry it later
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (syncThread != null) {
+            syncThread.interrupt();
+        }
+        return true;
+    }
+
+    //download the first page of every selected category into the disk cache
+    //return true if all the categories were downloaded
+    static boolean sync(Context context) {
+        ArticleDiskCache cache = ArticleDiskCache.getInstance(context);
+        ArticleStore store = ArticleStore.getInstance(context);
+        ArticleQueries.loadCategories(context);
+        //the requests of the whole sync add their timings and downloaded bytes to these totals
+        HttpFetcher.Timings totals = new HttpFetcher.Timings();
+        //the categories of the sync share the instances of their repeated values
+        StringPool pool = new StringPool();
+        //the cached queries only download the articles published since their newest one
+        boolean newestFirst = ArticleQueries.isNewestFirst(context);
+        long startTime = SystemClock.elapsedRealtime();
+        int articleCount = 0;
+        int failedQueries = 0;
+
+        //the queries are downloaded one by one, the sync is not waited for by the user
+        for (String url : ArticleQueries.buildQueryUrls(context, 1)) {
+            if (Thread.currentThread().isInterrupted()) {
+                Log.i(TAG, "Article sync stopped");
+                return false;
+            }
+            List<Article> articles = DeltaSync.download(url, newestFirst, cache, totals, pool);
+            if (articles != null) {
+                cache.put(url, articles);
+                ArticleQueries.storeArticles(store, url, articles);
+                articleCount += articles.size();
+            } else {
+                failedQueries++;
+            }
+        }
+
+        long duration = SystemClock.elapsedRealtime() - startTime;
+        Log.i(TAG, "Article sync finished in " + duration + " ms: " + articleCount + " articles, "
+                + totals.bodyBytes + " bytes fetched, " + failedQueries + " failed queries (" + totals + ")");
+        return failedQueries == 0;
+    }
+}
@@ -11,24 +11,60 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import static com.example.android.guardiannews.MainActivity.TAG;
+import java.util.Map;
 
 final class ArticleUtils {
+    //constant tag for log entries, this class is also used without MainActivity in the benchmarks
+    private final static String TAG = ArticleUtils.class.getName();
+
     private final static int READ_TIMEOUT_LIMIT = 10000; /* milliseconds */
     private final static int CONNECTION_TIMEOUT_LIMIT = 15000; /* milliseconds */
-    private final static int SERVER_RESPONSE_OK = 200;
+    private final static long FRESHNESS_WINDOW = 5000; /* milliseconds */
+    //the parsed responses kept for 304 answers: the first pages of the six categories and a few following pages
+    private final static int MAX_PARSED_RESPONSES = 16;
+
+    //the HTTP client sends conditional requests, so unchanged responses are neither downloaded nor parsed again
+    //the timeouts and the server errors are retried, and a section that keeps failing is not requested for a while
+    private static volatile HttpFetcher httpFetcher =
+            new ResilientFetcher(new UrlConnectionFetcher(READ_TIMEOUT_LIMIT, CONNECTION_TIMEOUT_LIMIT));
+
+    //the articles of the last 200 response of the recently requested query urls, reused when the server answers 304 Not Modified
+    //the least recently used url is dropped with its validators, so its next request downloads and parses the articles again
+    private final static Map<String, List<Article>> lastParsedArticles = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<Article>>(MAX_PARSED_RESPONSES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Article>> eldest) {
+                    if (size() <= MAX_PARSED_RESPONSES) {
+                        return false;
+                    }
+                    URL url = createUrl(eldest.getKey());
+                    if (url != null) {
+                        httpFetcher.forget(url);
+                    }
+                    return true;
+                }
+            });
 
+    //concurrent and repeated requests of the same query url (e.g. during a rotation) share one download
+    private final static RequestCoalescer<List<Article>> coalescer = new RequestCoalescer<>(FRESHNESS_WINDOW);
 
     private ArticleUtils() {
     }
 
+    //replace the HTTP client, e.g. with an InMemoryFetcher in tests and benchmarks
+    static void setHttpFetcher(HttpFetcher fetcher) {
+        httpFetcher = fetcher;
+        //the recent results came from the previous client
+        coalescer.clear();
+    }
+
 
     //create URL object from url address
     private static URL createUrl(String url) {
@@ -42,48 +78,70 @@ final class ArticleUtils {
     }
 
 
-    // make http request to get a json string from the server
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    // make http request and parse the json response while it is being downloaded
+    // the timings of the request are added to totals, if it is not null
+    private static List<Article> requestArticles(URL url, HttpFetcher.Timings totals, StringPool pool) throws IOException {
+        List<Article> articles = null;
         // If the URL is null, then return early.
         if (url == null) {
-            Log.e(TAG, "makeHttpRequest error: null parameter");
+            Log.e(TAG, "requestArticles error: null parameter");
             return null;
         }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        HttpFetcher.Response response = null;
 
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.setReadTimeout(READ_TIMEOUT_LIMIT);
-            urlConnection.setConnectTimeout(CONNECTION_TIMEOUT_LIMIT);
-            urlConnection.connect();
-            // If the request was successful (response code 200), then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == SERVER_RESPONSE_OK) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream); //see readFromStream method in step 3
+            response = httpFetcher.fetch(url);
+            // If the request was successful (response code 200), then parse the input stream directly.
+            if (response.getResponseCode() == HttpFetcher.HTTP_OK) {
+                //the body is downloaded while it is parsed, so the parse time includes the http_body time
+                long parseStart = PerfTrace.begin(PerfTrace.PARSE);
+                try {
+                    articles = ArticleStreamParser.parse(response.getBody(), pool);
+                } finally {
+                    PerfTrace.end(PerfTrace.PARSE, parseStart);
+                }
+                lastParsedArticles.put(url.toString(), articles);
+                httpFetcher.remember(url, response);
+            } else if (response.isNotModified()) {
+                // Nothing has changed since the last request, the articles parsed then are still valid
+                articles = lastParsedArticles.get(url.toString());
+                if (articles == null) {
+                    // they have been dropped in the meantime, the next request downloads them again
+                    httpFetcher.forget(url);
+                }
             } else {
-                Log.e(TAG, "Http connection problem. Response code = " + urlConnection.getResponseCode());
+                Log.e(TAG, "Http connection problem. Response code = " + response.getResponseCode());
+                httpFetcher.forget(url);
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Problem creating url connection or retrieving the Guardian JSON results. ", e);
+        } catch (CircuitBreaker.OpenException e) {
+            // The section has failed again and again, it is not requested until its circuit closes
+            // the validators are kept, so the first request after that can still be answered with 304
+            Log.w(TAG, e.getMessage());
+        } catch (IOException | IllegalStateException e) {
+            // JsonReader throws IllegalStateException when the json doesn't have the expected structure
+            Log.e(TAG, "Problem creating url connection or parsing the Guardian JSON results. ", e);
+            httpFetcher.forget(url);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
+            if (response != null) {
                 // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies that an IOException could be thrown.
-                inputStream.close();
+                // the requestArticles(URL url) method signature specifies that an IOException could be thrown.
+                response.close();
+                if (response.getTimings() != null) {
+                    PerfTrace.recordHttp(response.getTimings());
+                    if (totals != null) {
+                        totals.add(response.getTimings());
+                    }
+                }
             }
         }
-        return jsonResponse;
+        return articles;
     }
 
     // read data from input stream and create a (json) String
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    // readFromStream and getArticleList are the org.json (DOM) parse path,
+    // they are kept for comparing it with ArticleStreamParser in the benchmarks
+    static String readFromStream(InputStream inputStream) throws IOException {
         //create a StringBuilder that will contain all data from the stream
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
@@ -104,7 +162,12 @@ final class ArticleUtils {
         return output.toString();
     }
 
-    private static List<Article> getArticleList(String jsonString) {
+    static List<Article> getArticleList(String jsonString) {
+        return getArticleList(jsonString, null);
+    }
+
+    //the contributor names are deduplicated through the pool, if it is not null
+    static List<Article> getArticleList(String jsonString, StringPool pool) {
 
         List<Article> articleArrayList = new ArrayList<>();
 
@@ -125,23 +188,25 @@ final class ArticleUtils {
 
                 Article article = new Article();
 
-                String publicationDate;
-                String publicationTime;
+                long publicationMillis;
+                String sectionId;
                 String articleCategory;
                 String articleTitle;
                 String articleUrl;
                 String trailText;
+                String thumbnailUrl;
                 String authorName;
 
                 //extract the relevant article data from the json string
                 JSONObject jsonArticle = resultsArray.getJSONObject(i);
-                publicationDate = jsonArticle.optString("webPublicationDate").substring(0, 10);
-                publicationTime = jsonArticle.optString("webPublicationDate").substring(11, 16);
+                publicationMillis = Article.parsePublicationDate(jsonArticle.optString("webPublicationDate"));
+                sectionId = jsonArticle.optString("sectionId");
                 articleCategory = jsonArticle.optString("sectionName");
                 articleTitle = jsonArticle.optString("webTitle");
                 articleUrl = jsonArticle.optString("webUrl");
                 JSONObject fields = jsonArticle.getJSONObject("fields");
                 trailText = fields.optString("trailText");
+                thumbnailUrl = fields.optString("thumbnail");
                 JSONArray tagsArray = jsonArticle.getJSONArray("tags");
                 JSONObject contributorTag;
                 if (tagsArray.length() > 0) {
@@ -152,15 +217,17 @@ final class ArticleUtils {
                 }
 
                 //add the relevant article data to the corresponding field of the article object
-                article.setPublicationDate(publicationDate);
-                article.setPublicationTime(publicationTime);
-                article.setCategory(articleCategory);
+                article.setPublicationMillis(publicationMillis);
+                article.setCategoryId(CategoryRegistry.get().idOf(sectionId, articleCategory));
                 article.setArticleTitle(articleTitle);
                 article.setArticleUrl(articleUrl);
                 article.setTrailText(trailText);
+                if (!thumbnailUrl.isEmpty()) {
+                    article.setThumbnailUrl(thumbnailUrl);
+                }
                 if (authorName != null) {
                     if (!authorName.isEmpty()) {
-                        article.setAuthorName(authorName);
+                        article.setAuthorName(pool != null ? pool.intern(authorName) : authorName);
                     }
                 }
 
@@ -175,23 +242,57 @@ final class ArticleUtils {
         return articleArrayList;
     }
 
+    //sort the articles based on the publication time, in a decreasing order if newestFirst is true
+    //the comparisons only compare the parsed timestamps, nothing is allocated during the sort
+    static void sortArticles(List<Article> articles, boolean newestFirst) {
+        if (newestFirst) {
+            Collections.sort(articles, Collections.reverseOrder());
+        } else {
+            Collections.sort(articles);
+        }
+    }
+
+    //drop the saved response and validators of a query url that is not going to be requested again
+    static void forgetResponse(String queryUrl) {
+        lastParsedArticles.remove(queryUrl);
+        URL url = createUrl(queryUrl);
+        if (url != null) {
+            httpFetcher.forget(url);
+        }
+    }
+
     static List<Article> fetchArticleData(String queryUrl) {
+        return fetchArticleData(queryUrl, null, new StringPool());
+    }
+
+    //fetch the articles and add the time and the downloaded bytes of the request to totals
+    //a caller joining a request already in flight, or repeating a request of the last few seconds, gets its result
+    //without adding anything to totals
+    //the parsed values are deduplicated through the pool of the load
+    static List<Article> fetchArticleData(String queryUrl, final HttpFetcher.Timings totals, final StringPool pool) {
+        return coalescer.get(queryUrl, new RequestCoalescer.Request<List<Article>>() {
+            @Override
+            public List<Article> load(String url) {
+                return requestArticleData(url, totals, pool);
+            }
+        });
+    }
+
+    private static List<Article> requestArticleData(String queryUrl, HttpFetcher.Timings totals, StringPool pool) {
 
         // Create URL object from the url query address
         URL url = createUrl(queryUrl);
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String json = null;
+        // Perform HTTP request to the URL, extract the relevant fields from the JSON response
+        // and create a list of Articles
+        List<Article> articles = null;
         try {
             // Connect to web server
-            json = makeHttpRequest(url);
+            articles = requestArticles(url, totals, pool);
         } catch (IOException e) {
             Log.e(TAG, "Problem making the HTTP request.", e);
         }
 
-        // Extract relevant fields from the JSON response and create a list of Articles
-        List<Article> articles = getArticleList(json);
-
         // Return the list of Articles
         return articles;
     }
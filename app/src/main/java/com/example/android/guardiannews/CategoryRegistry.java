@@ -0,0 +1,119 @@
+package com.example.android.guardiannews;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//The categories (Guardian sections) of the articles, each one identified by a small int
+//The parser maps the section id of every article to its int once, so the list only has to index arrays
+//to show the name and the color of the category
+//The colors of the known categories are loaded from the resources (by ArticleQueries), a section missing from them
+//is added when it is first parsed, with the default color
+//The names are the section names of the API responses, like the list showed them before the registry:
+//the labels of the settings screen (e.g. "World News" for "World news") are only used in the settings
+final class CategoryRegistry {
+    //the category of articles without a section
+    static final int UNKNOWN = 0;
+    //the text color, used until the resources are loaded
+    private static final int DEFAULT_COLOR = 0xFF212121;
+
+    private static final CategoryRegistry instance = new CategoryRegistry();
+
+    private final Map<String, Integer> idsBySection = new ConcurrentHashMap<>();
+    //indexed by the category id, the arrays are replaced (never changed) when a category is added,
+    //so the list can read them without locking
+    private volatile String[] sectionIds = {null};
+    private volatile String[] names = {null};
+    private volatile int[] colors = {DEFAULT_COLOR};
+    private boolean resourcesLoaded = false;
+
+    CategoryRegistry() {
+    }
+
+    //the registry shared by the parsers and the list
+    static CategoryRegistry get() {
+        return instance;
+    }
+
+    //check if the categories of the resources have been loaded
+    synchronized boolean isLoaded() {
+        return resourcesLoaded;
+    }
+
+    //register the categories offered in the settings with their colors, their names come with their first article
+    //the default color is the color of the unknown category and of the sections missing from the resources
+    synchronized void load(String[] sectionIdList, int[] colorList, int defaultColor) {
+        setColor(UNKNOWN, defaultColor);
+        for (int i = 0; i < sectionIdList.length; i++) {
+            Integer id = idsBySection.get(sectionIdList[i]);
+            if (id == null) {
+                register(sectionIdList[i], null, colorList[i]);
+            } else {
+                setColor(id, colorList[i]);
+            }
+        }
+        resourcesLoaded = true;
+    }
+
+    //add a category, return its id
+    private int register(String sectionId, String name, int color) {
+        int id = sectionIds.length;
+        sectionIds = append(sectionIds, sectionId);
+        names = append(names, name);
+        int[] newColors = Arrays.copyOf(colors, id + 1);
+        newColors[id] = color;
+        colors = newColors;
+        idsBySection.put(sectionId, id);
+        return id;
+    }
+
+    //the id of the section, called by the parsers for every article
+    //an unknown section is added with the section name of the response,
+    //a section loaded from the resources gets the name of the first response that has one
+    int idOf(String sectionId, String sectionName) {
+        if (sectionId == null || sectionId.isEmpty()) {
+            return UNKNOWN;
+        }
+        Integer id = idsBySection.get(sectionId);
+        if (id != null && (names[id] != null || sectionName == null)) {
+            return id;
+        }
+        synchronized (this) {
+            //another parser may have added it in the meantime
+            id = idsBySection.get(sectionId);
+            if (id == null) {
+                return register(sectionId, sectionName, colors[UNKNOWN]);
+            }
+            if (names[id] == null) {
+                String[] newNames = names.clone();
+                newNames[id] = sectionName;
+                names = newNames;
+            }
+            return id;
+        }
+    }
+
+    String sectionIdOf(int id) {
+        return sectionIds[id];
+    }
+
+    String nameOf(int id) {
+        return names[id];
+    }
+
+    int colorOf(int id) {
+        return colors[id];
+    }
+
+    private void setColor(int id, int color) {
+        int[] newColors = colors.clone();
+        newColors[id] = color;
+        colors = newColors;
+    }
+
+    private static String[] append(String[] array, String value) {
+        String[] newArray = Arrays.copyOf(array, array.length + 1);
+        newArray[array.length] = value;
+        return newArray;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.guardiannews;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+//Stops sending the requests of a section that has failed again and again, so a broken section
+//doesn't cost a full round of retries on every load
+//While the circuit of a section is open its requests fail right away and the loader shows the cached articles of the section,
+//after the open time a single trial request is let through (half-open): its success closes the circuit,
+//its failure opens it again, and the other requests keep failing right away until it has ended
+final class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+
+    //the sections that have failed since their last success
+    private final Map<String, State> states = new HashMap<>();
+
+    private static class State {
+        int failures;
+        long openedAt;    //the time of the failure that opened the circuit, in nanoseconds
+        boolean trialSent;    //true while the trial request of the half-open circuit hasn't ended
+    }
+
+    //thrown instead of sending a request while the circuit of its section is open
+    static class OpenException extends IOException {
+        OpenException(String section) {
+            super("The circuit of " + section + " is open");
+        }
+    }
+
+    //the circuit opens after failureThreshold failures in a row and stays open for openMillis
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    //false while the circuit of the section is open, so its request must not be sent
+    //true once after the open time: the request allowed is the trial, and its result must be recorded
+    synchronized boolean allowRequest(String section) {
+        State state = states.get(section);
+        if (state == null || state.failures < failureThreshold) {
+            return true;
+        }
+        if (state.trialSent || !openTimePassed(state)) {
+            return false;
+        }
+        state.trialSent = true;
+        return true;
+    }
+
+    //the server has answered the request, the circuit of the section is closed
+    synchronized void recordSuccess(String section) {
+        states.remove(section);
+    }
+
+    //a failure after the open time (the trial request) opens the circuit again for the whole open time
+    synchronized void recordFailure(String section) {
+        State state = states.get(section);
+        if (state == null) {
+            state = new State();
+            states.put(section, state);
+        }
+        state.failures++;
+        state.trialSent = false;
+        if (state.failures >= failureThreshold) {
+            state.openedAt = System.nanoTime();
+        }
+    }
+
+    //the request ended without telling whether the section works, e.g. with a client error or because it was cancelled
+    //the circuit stays as it is, and a half-open circuit lets the next request through as its trial
+    synchronized void recordInconclusive(String section) {
+        State state = states.get(section);
+        if (state != null) {
+            state.trialSent = false;
+        }
+    }
+
+    //true while the requests of the section fail right away
+    synchronized boolean isOpen(String section) {
+        State state = states.get(section);
+        return state != null && state.failures >= failureThreshold && (state.trialSent || !openTimePassed(state));
+    }
+
+    private boolean openTimePassed(State state) {
+        return (System.nanoTime() - state.openedAt) / 1000000 >= openMillis;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.guardiannews;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+//Refreshes the first page of a newest-first query by downloading only the articles published since the newest one held
+//The publication time of the newest cached article of the query is sent as its from-date, so the response holds
+//only the new articles (and the newest held one, published at that very time), and they are merged on top of the cached ones
+//A delta that fills a whole page may have left out articles between the new and the held ones (a gap),
+//so it replaces the held articles like a full download would
+//A query with nothing cached, e.g. after the settings have changed, is downloaded in full
+final class DeltaSync {
+    private static final String PARAM_FROM_DATE = "from-date";
+    private static final String FROM_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private DeltaSync() {
+    }
+
+    //download the articles of a query url, only the new ones if it is the first page of a newest-first query that is cached
+    static List<Article> download(String queryUrl, boolean newestFirst, ArticleDiskCache cache,
+                                  HttpFetcher.Timings totals, StringPool pool) {
+        if (newestFirst && ArticleQueries.pageOf(queryUrl) == 1) {
+            ArticleDiskCache.Entry entry = cache.get(queryUrl, pool);
+            if (entry != null) {
+                return fetch(queryUrl, entry.articles, ArticleQueries.pageSizeOf(queryUrl), totals, pool);
+            }
+        }
+        return ArticleUtils.fetchArticleData(queryUrl, totals, pool);
+    }
+
+    //download the articles published since the newest held one, and merge them into the held newest-first list
+    //pageSize is the number of articles the query asks for, the merged list is cut to it
+    static List<Article> fetch(String queryUrl, List<Article> held, int pageSize, HttpFetcher.Timings totals, StringPool pool) {
+        long newest = newestOf(held);
+        if (newest == 0) {
+            return ArticleUtils.fetchArticleData(queryUrl, totals, pool);
+        }
+
+        String deltaUrl = deltaUrl(queryUrl, newest);
+        List<Article> delta = ArticleUtils.fetchArticleData(deltaUrl, totals, pool);
+        if (delta == null) {
+            return null;
+        }
+        if (delta.size() >= pageSize) {
+            //a gap: the delta holds the newest page of the query, the held articles are older than all of them
+            ArticleUtils.forgetResponse(deltaUrl);
+            return delta;
+        }
+
+        List<Article> merged = ArticleMerger.mergeDelta(delta, held, pageSize);
+        if (newestOf(merged) != newest) {
+            //the next refresh asks for the articles since the new newest one, this url is not requested again
+            ArticleUtils.forgetResponse(deltaUrl);
+        }
+        return merged;
+    }
+
+    //the query url asking only for the articles published at or after the given time
+    static String deltaUrl(String queryUrl, long fromMillis) {
+        SimpleDateFormat format = new SimpleDateFormat(FROM_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return queryUrl + (queryUrl.indexOf('?') < 0 ? "?" : "&") + PARAM_FROM_DATE + "=" + format.format(new Date(fromMillis));
+    }
+
+    //the publication time of the newest article, 0 if there is none
+    static long newestOf(List<Article> articles) {
+        long newest = 0;
+        if (articles != null) {
+            for (Article article : articles) {
+                newest = Math.max(newest, article.getPublicationMillis());
+            }
+        }
+        return newest;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.android.guardiannews;
+
+import android.app.Application;
+
+//Sets up the process before any activity or the sync service starts
+public class GuardianNewsApp extends Application {
+    //idle keep-alive connections kept in the pool, one for each article category that is queried at the same time
+    private static final String MAX_POOLED_CONNECTIONS = "6";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        //http.maxConnections is a property of the whole process read by HttpURLConnection,
+        //it is set here once instead of by UrlConnectionFetcher, so creating a fetcher has no side effects,
+        //and a value that is already set is kept
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", MAX_POOLED_CONNECTIONS);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.guardiannews;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+//The HTTP client behind ArticleUtils
+//UrlConnectionFetcher talks to the Guardian server, InMemoryFetcher answers from memory,
+//so the loader and the parser can be tested and measured without a network
+interface HttpFetcher {
+    int HTTP_OK = 200;
+    int HTTP_NOT_MODIFIED = 304;
+
+    //send a GET request to the url, the response has to be closed by the caller
+    Response fetch(URL url) throws IOException;
+
+    //save the validators of a response after its body has been processed,
+    //so the next request of the url can be answered with 304 Not Modified
+    void remember(URL url, Response response);
+
+    //the next request of the url will download the whole response
+    void forget(URL url);
+
+    //how long the phases of one request took, in nanoseconds
+    class Timings {
+        //a phase the fetcher can't measure
+        static final long UNAVAILABLE = -1;
+
+        long dns = UNAVAILABLE;
+        long connect;
+        long timeToFirstByte;
+        long body;
+        long bodyBytes;
+
+        long total() {
+            return Math.max(dns, 0) + connect + timeToFirstByte + body;
+        }
+
+        //add the timings of another request, to get the totals of a batch of requests
+        synchronized void add(Timings other) {
+            if (other.dns != UNAVAILABLE) {
+                dns = Math.max(dns, 0) + other.dns;
+            }
+            connect += other.connect;
+            timeToFirstByte += other.timeToFirstByte;
+            body += other.body;
+            bodyBytes += other.bodyBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "dns " + (dns != UNAVAILABLE ? dns / 1000000 + " ms" : "n/a") + ", connect " + connect / 1000000 + " ms, ttfb " + timeToFirstByte / 1000000
+                    + " ms, body " + body / 1000000 + " ms (" + bodyBytes + " bytes)";
+        }
+    }
+
+    //the status, the validators and the decoded body of a response
+    class Response implements Closeable {
+        private final int responseCode;
+        private final InputStream body;
+        private final String eTag;
+        private final String lastModified;
+        private final String retryAfter;
+        private final Timings timings;
+        private final Closeable connection;
+
+        Response(int responseCode, InputStream body, String eTag, String lastModified, Timings timings, Closeable connection) {
+            this(responseCode, body, eTag, lastModified, null, timings, connection);
+        }
+
+        Response(int responseCode, InputStream body, String eTag, String lastModified, String retryAfter,
+                 Timings timings, Closeable connection) {
+            this.responseCode = responseCode;
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.retryAfter = retryAfter;
+            this.timings = timings;
+            this.connection = connection;
+        }
+
+        int getResponseCode() {
+            return responseCode;
+        }
+
+        boolean isNotModified() {
+            return responseCode == HTTP_NOT_MODIFIED;
+        }
+
+        //the decoded body of a 200 response, null for every other response
+        InputStream getBody() {
+            return body;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        //the Retry-After header of a 429 or 503 response, in seconds or as an HTTP date, null if there is none
+        String getRetryAfter() {
+            return retryAfter;
+        }
+
+        //the body timing and size are complete after the body has been read
+        Timings getTimings() {
+            return timings;
+        }
+
+        @Override
+        public void close() throws IOException {
+            connection.close();
+        }
+    }
+}
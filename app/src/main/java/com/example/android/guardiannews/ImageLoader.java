@@ -0,0 +1,366 @@
+package com.example.android.guardiannews;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.example.android.guardiannews.MainActivity.TAG;
+
+//Loads the thumbnails of the article list
+//The decoded bitmaps are kept in a memory cache keyed by the image url and the decoded size, bounded by the bytes
+//of the bitmaps, and the downloaded image files in a disk cache trimmed like the article cache
+//The images are downloaded and decoded on a few background threads, sampled down to the size of the view
+//and in RGB_565, so a thumbnail takes a small fraction of the memory of the full image
+//Each row keeps one request and reuses it for every article it shows, and the threads take the requests from
+//a queue of their own, so binding a row allocates nothing even when its image isn't cached
+//A row that is recycled cancels its request, so a fling doesn't load the images of the rows it scrolled past
+final class ImageLoader {
+    static final long DEFAULT_DISK_MAX_SIZE = 10 * 1024 * 1024; /* bytes */
+
+    private static final String CACHE_DIRECTORY = "thumbnails";
+    private static final int THREAD_COUNT = 3;
+    private static final int READ_TIMEOUT_LIMIT = 10000; /* milliseconds */
+    private static final int CONNECTION_TIMEOUT_LIMIT = 15000; /* milliseconds */
+
+    private static ImageLoader instance;
+
+    private final LruCache<Key, Bitmap> memoryCache;
+    private final File directory;
+    private final long diskMaxSize;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //the requests waiting for a thread, each request is in it at most once
+    //it is also the lock of the requests: their images are changed on the main thread and read by the threads
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+
+    //the key of a bitmap in the memory cache: the same image decoded for a bigger view is another bitmap
+    //the key of a request is changed for each image it loads, so it is only used to look up the cache,
+    //the bitmaps are stored with keys of their own
+    static final class Key {
+        private String url;
+        private int width;
+        private int height;
+
+        Key() {
+        }
+
+        Key(String url, int width, int height) {
+            set(url, width, height);
+        }
+
+        void set(String url, int width, int height) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
+        boolean matches(String url, int width, int height) {
+            return this.url != null && this.url.equals(url) && this.width == width && this.height == height;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            return other.matches(url, width, height);
+        }
+
+        @Override
+        public int hashCode() {
+            return (url.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+
+    //the image of a view, one request is kept for each row and reused for the article the row is bound to
+    //must be used on the main thread
+    final class Request {
+        private final ImageView view;
+        //the image shown or being loaded, its url is null if there is none
+        private final Key key = new Key();
+        //changed each time the image is changed or cancelled, a loaded bitmap is set only if it is still the same
+        private int generation;
+        //true while the request is in the queue
+        private boolean queued;
+        //the bitmap loaded by a thread, handed over to the main thread
+        private Bitmap loadedBitmap;
+        private int loadedGeneration;
+        private final Runnable showLoadedBitmap = new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap;
+                synchronized (queue) {
+                    bitmap = loadedBitmap;
+                    loadedBitmap = null;
+                    if (loadedGeneration != generation) {
+                        return;
+                    }
+                }
+                if (bitmap != null) {
+                    view.setImageBitmap(bitmap);
+                }
+            }
+        };
+
+        private Request(ImageView view) {
+            this.view = view;
+        }
+
+        //show the image of the url in the view, sampled down to the given size in pixels
+        //a cached bitmap is set right away, otherwise the view is cleared until the image is loaded
+        //nothing changes if the view already shows or waits for the same image
+        void load(String url, int width, int height) {
+            if (key.matches(url, width, height)) {
+                return;
+            }
+            synchronized (queue) {
+                key.set(url, width, height);
+                generation++;
+            }
+
+            Bitmap cached = memoryCache.get(key);
+            if (cached != null) {
+                view.setImageBitmap(cached);
+                return;
+            }
+            view.setImageDrawable(null);
+
+            synchronized (queue) {
+                if (!queued) {
+                    queued = true;
+                    queue.addLast(this);
+                    queue.notify();
+                }
+            }
+        }
+
+        //the image won't be set on the view, a request still in the queue is skipped by the threads
+        //a download that has already started is finished into the disk cache, so it isn't wasted
+        void cancel() {
+            synchronized (queue) {
+                key.set(null, 0, 0);
+                generation++;
+            }
+        }
+    }
+
+    //takes the requests from the queue and loads their images, until the executor is shut down
+    private final Runnable worker = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Request request;
+                    String url;
+                    int width;
+                    int height;
+                    int generation;
+                    synchronized (queue) {
+                        while (queue.isEmpty()) {
+                            queue.wait();
+                        }
+                        request = queue.removeFirst();
+                        request.queued = false;
+                        url = request.key.url;
+                        width = request.key.width;
+                        height = request.key.height;
+                        generation = request.generation;
+                    }
+                    //the row has been recycled while the request was waiting in the queue
+                    if (url == null) {
+                        continue;
+                    }
+
+                    Bitmap bitmap = loadBitmap(url, width, height);
+                    if (bitmap == null) {
+                        continue;
+                    }
+                    synchronized (queue) {
+                        request.loadedBitmap = bitmap;
+                        request.loadedGeneration = generation;
+                    }
+                    mainHandler.post(request.showLoadedBitmap);
+                }
+            } catch (InterruptedException e) {
+                //the executor has been shut down
+            }
+        }
+    };
+
+    //the images are loaded by the given number of threads of the executor, which are kept until it is shut down
+    ImageLoader(File directory, int memoryBudget, long diskMaxSize, ExecutorService executor, int threadCount) {
+        this.directory = directory;
+        this.diskMaxSize = diskMaxSize;
+        this.memoryCache = new LruCache<Key, Bitmap>(memoryBudget) {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        for (int i = 0; i < threadCount; i++) {
+            executor.execute(worker);
+        }
+    }
+
+    //the loader shared by the whole app, its files are stored in the app's cache directory
+    static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            File directory = new File(appContext.getCacheDir(), CACHE_DIRECTORY);
+            ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ImageLoader");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            instance = new ImageLoader(directory, memoryBudget(appContext), DEFAULT_DISK_MAX_SIZE, executor, THREAD_COUNT);
+        }
+        return instance;
+    }
+
+    //the bytes of bitmaps kept in memory: an eighth of the heap of the app, a sixteenth on low-RAM devices
+    static int memoryBudget(Context context) {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        boolean lowRam = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            lowRam = activityManager != null && activityManager.isLowRamDevice();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, maxMemory / (lowRam ? 16 : 8));
+    }
+
+    //the number of bytes of the bitmaps in the memory cache, never more than the budget
+    int memoryCacheSize() {
+        return memoryCache.size();
+    }
+
+    int memoryBudget() {
+        return memoryCache.maxSize();
+    }
+
+    //a request showing the images of the view, kept by the row of the view
+    Request newRequest(ImageView view) {
+        return new Request(view);
+    }
+
+    //return the bitmap of the url from the memory cache, the disk cache or the network, in this order
+    //null if the image can't be downloaded or decoded
+    Bitmap loadBitmap(String url, int width, int height) {
+        Key key = new Key(url, width, height);
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File file = new File(directory, ArticleDiskCache.fileNameOf(url));
+        if (file.exists()) {
+            //mark the file as recently used
+            file.setLastModified(System.currentTimeMillis());
+        } else if (!download(url, file)) {
+            return null;
+        }
+
+        bitmap = decodeSampled(file, width, height);
+        if (bitmap == null) {
+            //not an image, it would fail again
+            file.delete();
+            return null;
+        }
+        memoryCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    //download the image into the file, return false if it failed
+    private boolean download(String url, File file) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return false;
+        }
+
+        //write into a temporary file first, so a half-written image is never decoded
+        File temporaryFile = new File(directory, file.getName() + ".tmp" + Thread.currentThread().getId());
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            URLConnection connection = new URL(url).openConnection();
+            connection.setReadTimeout(READ_TIMEOUT_LIMIT);
+            connection.setConnectTimeout(CONNECTION_TIMEOUT_LIMIT);
+            in = connection.getInputStream();
+            out = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            out.close();
+            out = null;
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+                return false;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Problem downloading the thumbnail. ", e);
+            temporaryFile.delete();
+            return false;
+        } finally {
+            ArticleDiskCache.closeQuietly(in);
+            ArticleDiskCache.closeQuietly(out);
+        }
+
+        synchronized (this) {
+            ArticleDiskCache.trimToSize(directory, diskMaxSize);
+        }
+        return true;
+    }
+
+    //decode the image file sampled down to about the given size, in RGB_565, null if it isn't an image
+    static Bitmap decodeSampled(File file, int width, int height) {
+        //the size of the image is read first, without allocating its pixels
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = inSampleSize(options.outWidth, options.outHeight, width, height);
+        //the thumbnails have no transparency, so two bytes a pixel are enough
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    //the largest power of two that keeps the sampled image at least as big as the requested size
+    static int inSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0) {
+            return sampleSize;
+        }
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
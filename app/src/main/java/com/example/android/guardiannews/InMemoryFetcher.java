@@ -0,0 +1,66 @@
+package com.example.android.guardiannews;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Answers the requests from responses recorded in memory instead of the network
+//It is used to test and measure the loader and the parser without the timing noise of a real connection
+final class InMemoryFetcher implements HttpFetcher {
+    private static final int HTTP_NOT_FOUND = 404;
+
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final long latency; /* milliseconds, added to every request */
+
+    InMemoryFetcher() {
+        this(0);
+    }
+
+    InMemoryFetcher(long latency) {
+        this.latency = latency;
+    }
+
+    //set the body that is returned for the url, urls without a body are answered with 404
+    void put(String url, byte[] body) {
+        responses.put(url, body);
+    }
+
+    @Override
+    public Response fetch(URL url) throws IOException {
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + url);
+            }
+        }
+
+        Timings timings = new Timings();
+        timings.timeToFirstByte = latency * 1000000;
+        byte[] body = responses.get(url.toString());
+        if (body == null) {
+            return new Response(HTTP_NOT_FOUND, null, null, null, timings, NOTHING_TO_CLOSE);
+        }
+        timings.bodyBytes = body.length;
+        return new Response(HTTP_OK, new ByteArrayInputStream(body), null, null, timings, NOTHING_TO_CLOSE);
+    }
+
+    //the recorded responses have no validators, every request is answered with the whole body
+    @Override
+    public void remember(URL url, Response response) {
+    }
+
+    @Override
+    public void forget(URL url) {
+    }
+
+    private static final Closeable NOTHING_TO_CLOSE = new Closeable() {
+        @Override
+        public void close() {
+        }
+    };
+}
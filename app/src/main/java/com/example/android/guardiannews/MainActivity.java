@@ -1,53 +1,69 @@
 package com.example.android.guardiannews;
 
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Article>> {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Article>>,
+        SharedPreferences.OnSharedPreferenceChangeListener {
     static final String TAG = MainActivity.class.getName();      //constant tag for log entries
     static final String ORDER_BY_NEWEST = "Newest";      //constant cases for making list order
     static final String ORDER_BY_OLDEST = "Oldest";
     ArticleAdapter adapter;     //custom adapter to handle the ListView
 
-    String baseUrl = "";
-
     // The list containing the query urls
     ArrayList<String> urlList;
 
-    //Constant value for the loader ID - we use only one loader.
+    //Constant values for the loader IDs
+    //the first page of every category is loaded by the first loader, the following pages by the second one
     private static final int GUARDIAN_LOADER_ID = 1;
-
-    //constants indicating the different categories
-    static final int CATEGORY_TECH = 1;
-    static final int CATEGORY_SCIENCE = 2;
-    static final int CATEGORY_CITY = 3;
-    static final int CATEGORY_WORLD = 4;
-    static final int CATEGORY_ENVIRONMENT = 5;
-    static final int CATEGORY_GLOBAL_DEVELOPMENT = 6;
+    private static final int NEXT_PAGE_LOADER_ID = 2;
+    //the search of the stored articles has its own loader, the articles of the first loader are shown again after the search
+    private static final int SEARCH_LOADER_ID = 3;
+
+    //the key of the page number in the loader's argument bundle
+    private static final String ARG_PAGE = "page";
+    //the key of the search text in the search loader's argument bundle
+    private static final String ARG_SEARCH_TEXT = "search_text";
+    //the next page is requested when the user scrolls this close to the end of the list
+    private static final int NEXT_PAGE_THRESHOLD = 5;
+
+    //the last page of the categories that is shown in the list
+    private int currentPage = 1;
+    //true while the next page is being downloaded
+    private boolean loadingNextPage = false;
+    //true when a page came back empty, so there are no more articles to load
+    private boolean lastPageReached = false;
+    //the first page shown at the top of the list, the loader delivers the same list again when the activity is started
+    private List<Article> shownFirstPage;
+    //true when the settings have changed while the settings screen was open, so the list has to be loaded again
+    private boolean settingsChanged = false;
+    //true while the search view is open, the list shows the search result instead of the downloaded articles
+    private boolean searching = false;
 
     //View to show empty state message when no article can be shown
     TextView emptyStateTextView;
@@ -77,99 +93,173 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     @NonNull
     @Override
     public Loader<List<Article>> onCreateLoader(int id, Bundle args) {
+        //the search loader only reads the local article store
+        if (id == SEARCH_LOADER_ID) {
+            return new ArticleSearchLoader(MainActivity.this, args != null ? args.getString(ARG_SEARCH_TEXT) : null);
+        }
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-        //This is the default category list to be used if the preference key can't be found
-        HashSet<String> defaultCategorySelection = new HashSet<>(Arrays.asList(getResources().getStringArray(R.array.categories_default_values)));
-
-        //get the categories selected by the user (or the default selection)
-        Set<String> categoryKeySet = sharedPrefs.getStringSet(getString(R.string.settings_select_category_key), defaultCategorySelection);
-
-        //create an array of the category keys referring to the topic of article, that will be used as "section" parameter for the query
-        String[] categoryKeys = categoryKeySet.toArray(new String[categoryKeySet.size()]);
-
-        urlList = new ArrayList<>();
-        //this for-each loop creates a list of Uris - each for one article category selected by the user
-        for (String categoryKey : categoryKeys) {
-            // getString retrieves a String value from the preferences.
-            // The second parameter is the default value for this preference.
-            String listLength = sharedPrefs.getString(
-                    getString(R.string.settings_list_items_limit_key),
-                    getString(R.string.settings_list_items_limit_default));
-
-            // parse breaks apart the URI String that's passed into its parameter
-            Uri baseUri = Uri.parse(baseUrl);
-
-            // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
-            Uri.Builder uriBuilder = baseUri.buildUpon();
-
-            // Append query parameter and its value.
-            uriBuilder.appendQueryParameter("section", categoryKey);
-            uriBuilder.appendQueryParameter("show-tags", "contributor");
-            uriBuilder.appendQueryParameter("show-fields", "trailText");
-            uriBuilder.appendQueryParameter("page-size", listLength);
-            uriBuilder.appendQueryParameter("api-key", "f308e9ec-fba1-4ab0-a97c-bb33a7b2ecbd");
+        //the first loader always loads the first page, the next page loader gets the page number as argument
+        int page = args != null ? args.getInt(ARG_PAGE, 1) : 1;
 
-            // Add the complete Uri to the list of query urls
-            urlList.add(uriBuilder.toString());
+        //create the query urls of the categories selected by the user, several categories can share a query
+        long urlBuildStart = PerfTrace.begin(PerfTrace.URL_BUILD);
+        try {
+            urlList = ArticleQueries.buildQueryUrls(this, page);
+        } finally {
+            PerfTrace.end(PerfTrace.URL_BUILD, urlBuildStart);
         }
+        //every category is queried in the order selected in the settings, so the loader only has to merge them
+        boolean newestFirst = ArticleQueries.isNewestFirst(this);
 
         // Return the list of completed uris containing the query urls
-        return new ArticleLoader(MainActivity.this, urlList);
+        //the first page is shown category by category as they are downloaded, the next pages are appended at once
+        return new ArticleLoader(MainActivity.this, urlList, newestFirst, page == 1);
     }
 
     //implement loader callback method to update the UI with the result
     @Override
     public void onLoadFinished(@NonNull Loader<List<Article>> loader, List<Article> data) {
+        if (loader.getId() == SEARCH_LOADER_ID) {
+            onSearchLoaded(data);
+            return;
+        }
+
+        //a following page is added to the end of the list, the articles already shown are kept
+        if (loader.getId() == NEXT_PAGE_LOADER_ID) {
+            onNextPageLoaded(data);
+            return;
+        }
+
+        //the list may hold only the categories downloaded so far, the progress bar above it shows that more are coming
+        showPendingSections(((ArticleLoader) loader).getPendingSections() > 0);
+
+        //the search result is shown, the downloaded articles are delivered again when the search is closed
+        if (searching) {
+            return;
+        }
+
         //Loading spinner spins on UI during the downloading of data
         //When the background work is done, the spinning progress bar gets hidden
         hideProgressBar();
 
-        // myAdapter.setMyDataMethod(data);
-        // Clear the adapter of previous article data
-        adapter.clearList();
+        //the loader delivers the list it already has again when the activity is started (e.g. back from the browser),
+        //the following pages appended to it are still shown
+        if (data == shownFirstPage) {
+            return;
+        }
+        //a refreshed first page replaces the articles of the old one, the following pages are kept below it
+        if (currentPage > 1 && data != null && !data.isEmpty()) {
+            shownFirstPage = data;
+            adapter.refreshFirstPage(data);
+            return;
+        }
 
-        // If there is a valid list of Articles, then add them to the adapter's data set.
-        // This will trigger the ListView to update.
-        if (data != null && !data.isEmpty()) {
-            //Set the order of the list according to the user's settings (or the default setting)
-            SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-            String orderBy = sharedPrefs.getString(
-                    getString(R.string.settings_order_by_key),
-                    getString(R.string.settings_order_by_default));
-
-            switch (orderBy) {
-                case ORDER_BY_NEWEST:
-                    //based on the publication date, sort the articles in a decreasing order
-                    Collections.sort(data, Collections.reverseOrder());
-                    break;
-                case ORDER_BY_OLDEST:
-                    //based on the publication date, sort the articles in an increasing order
-                    Collections.sort(data);
-                    break;
-            }
+        //the first page is (re)loaded, so the paging starts again
+        resetPaging();
+        shownFirstPage = data;
 
+        // If there is a valid list of Articles, then replace the adapter's data set with them.
+        // The adapter updates only the rows that have changed since the previous list.
+        //The loader has already merged the articles in the order selected in the settings
+        if (data != null && !data.isEmpty()) {
             //update the list with the downloaded articles
-            adapter.addAllToList(data);
-            //notify the adapter to refresh the view
-            adapter.notifyDataSetChanged();
+            adapter.submitList(data);
 
             // if there is no article to show, set the empty state message to the UI
             //the emptyStateTextView is already connected to the ListView which decides to use it or not
         } else {
+            // Clear the adapter of previous article data
+            adapter.clearList();
             if (isConnectedToNetwork()) {
                 emptyStateTextView.setText(R.string.empty_list);
+            } else {
+                emptyStateTextView.setText(R.string.no_internet_connection);
             }
         }
     }
 
+    //add the articles of the next page to the end of the list
+    private void onNextPageLoaded(List<Article> data) {
+        //the loader can deliver the same page again when its cached articles were revalidated
+        boolean requestedPage = loadingNextPage;
+        loadingNextPage = false;
+        if (searching) {
+            //the page is loaded again when the user scrolls to the end of the list after the search
+            return;
+        }
+        if (data == null || data.isEmpty()) {
+            //the categories have no more articles
+            lastPageReached = requestedPage;
+            return;
+        }
+
+        if (requestedPage) {
+            currentPage++;
+        }
+        adapter.appendToList(data);
+    }
+
+    //show the stored articles matching the search text
+    private void onSearchLoaded(List<Article> data) {
+        if (!searching) {
+            return;
+        }
+        if (data != null && !data.isEmpty()) {
+            emptyStateTextView.setText("");
+            adapter.submitList(data);
+        } else {
+            adapter.clearList();
+            emptyStateTextView.setText(R.string.no_search_result);
+        }
+    }
+
+    //search the text in the stored articles, the result replaces the list
+    private void search(String searchText) {
+        searching = true;
+        Bundle args = new Bundle();
+        args.putString(ARG_SEARCH_TEXT, searchText);
+        getSupportLoaderManager().restartLoader(SEARCH_LOADER_ID, args, this);
+    }
+
+    //close the search and show the downloaded articles again
+    private void endSearch() {
+        searching = false;
+        getSupportLoaderManager().destroyLoader(SEARCH_LOADER_ID);
+        emptyStateTextView.setText("");
+        //the search result replaced the pages, so the list starts again from the first page
+        resetPaging();
+        //initLoader delivers the articles the first loader already has, without loading them again
+        getSupportLoaderManager().initLoader(GUARDIAN_LOADER_ID, null, this);
+    }
+
+    //forget the following pages, the next page loader must not append a page to the new first page
+    private void resetPaging() {
+        getSupportLoaderManager().destroyLoader(NEXT_PAGE_LOADER_ID);
+        currentPage = 1;
+        loadingNextPage = false;
+        lastPageReached = false;
+        shownFirstPage = null;
+    }
+
+    //start downloading the page after the last one shown
+    private void loadNextPage() {
+        loadingNextPage = true;
+        Bundle args = new Bundle();
+        args.putInt(ARG_PAGE, currentPage + 1);
+        //restartLoader creates a new loader for the new page number
+        getSupportLoaderManager().restartLoader(NEXT_PAGE_LOADER_ID, args, this);
+    }
+
     //implement loader callback method which informs us when the data from our loader is no longer valid
     // so we should empty all the data provided by the loader
     @Override
     public void onLoaderReset(@NonNull Loader<List<Article>> loader) {
-        //we have only one loader in this example, so we don't need to use the loader parameter (which indicates the loader object to be reset)
-        adapter.clearList();
-        //here we delete the adapter data, so it is no longer visible in the UI ListView
+        //the articles of the next page loader are already part of the list, only the first loader owns the list
+        if (loader.getId() == GUARDIAN_LOADER_ID) {
+            adapter.clearList();
+            //here we delete the adapter data, so it is no longer visible in the UI ListView
+            showPendingSections(false);
+        }
     }
 
 
@@ -178,15 +268,32 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        //measure the stages of loading and showing the articles in debug builds
+        PerfTrace.setEnabled(BuildConfig.DEBUG);
+
         //find a reference to the empty state view in the layout
         emptyStateTextView = findViewById(R.id.empty_state_text);
         //find a reference to the RecyclerView in the layout
         RecyclerView newsList = findViewById(R.id.article_list);
 
         //set a LinearLayoutManager on the recycleView to get a vertically scrollable list
-        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
         newsList.setLayoutManager(layoutManager);
 
+        //load the next page of articles when the user scrolls near the end of the list (infinite scroll)
+        newsList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || searching || loadingNextPage || lastPageReached || adapter.getItemCount() == 0) {
+                    return;
+                }
+                int lastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+                if (lastVisiblePosition >= adapter.getItemCount() - NEXT_PAGE_THRESHOLD) {
+                    loadNextPage();
+                }
+            }
+        });
+
         //set a divider between the list items
         DividerItemDecoration dividerItemDecoration = new DividerItemDecoration(newsList.getContext(),
                 layoutManager.getOrientation());
@@ -196,21 +303,59 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         ArrayList<Article> articleList = new ArrayList<>();
         //create a new adapter that takes an empty list of Articles, and an implemented OnItemClickListener as input
         adapter = new ArticleAdapter(MainActivity.this, articleList, listener);
+        adapter.setCustomRows(PreferenceManager.getDefaultSharedPreferences(this).getBoolean(
+                getString(R.string.settings_custom_rows_key), getResources().getBoolean(R.bool.settings_custom_rows_default)));
         //set the adapter on the listView, so the list can be populated in the user interface
         newsList.setAdapter(adapter);
 
-        baseUrl = getString(R.string.base_url);
-        if (isConnectedToNetwork()) {
         /*
 		get the loader manager and initialize a loader
 		the loader id is indicated by a constant as we have only one loader
 		bundle is null as we don't use an existing loader
 		this (the main activity) is the actual object that should receive the callbacks and the data
+		the loader is started even without internet connection, as it can show the cached articles
              */
-            getSupportLoaderManager().initLoader(GUARDIAN_LOADER_ID, null, this);
-        } else {
-            hideProgressBar();
-            emptyStateTextView.setText(R.string.no_internet_connection);
+        getSupportLoaderManager().initLoader(GUARDIAN_LOADER_ID, null, this);
+
+        //keep the cached articles fresh in the background, so the next start can show them right away
+        //JobService exists from API 21, the sync service class must not even be loaded on older devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            ArticleSyncService.schedule(this);
+        }
+
+        //listen to the changes of the settings, to load the list in the new order or with the new categories
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (settingsChanged) {
+            settingsChanged = false;
+            //a page downloaded with the old settings is not appended to the new list
+            resetPaging();
+            //the new queries are answered from the article store first, so the list is updated without waiting for the network
+            getSupportLoaderManager().restartLoader(GUARDIAN_LOADER_ID, null, this);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(this);
+        super.onDestroy();
+    }
+
+    //called when the user changes a setting
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (key.equals(getString(R.string.settings_order_by_key))
+                || key.equals(getString(R.string.settings_select_category_key))
+                || key.equals(getString(R.string.settings_list_items_limit_key))
+                || key.equals(getString(R.string.settings_per_section_queries_key))) {
+            settingsChanged = true;
+        } else if (key.equals(getString(R.string.settings_custom_rows_key))) {
+            //the rows are only drawn differently, the list doesn't have to be loaded again
+            adapter.setCustomRows(sharedPreferences.getBoolean(key, getResources().getBoolean(R.bool.settings_custom_rows_default)));
         }
     }
 
@@ -220,6 +365,48 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the Options Menu we specified in XML
         getMenuInflater().inflate(R.menu.main, menu);
+
+        //the search view searches the stored articles as the user types
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                //hide the keyboard, so the whole result can be seen
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (newText.trim().isEmpty()) {
+                    //the search text was deleted, show the downloaded articles while the search view is open
+                    if (searching) {
+                        endSearch();
+                    }
+                } else {
+                    search(newText);
+                }
+                return true;
+            }
+        });
+        //the performance report is only offered in debug builds
+        menu.findItem(R.id.action_perf_stats).setVisible(BuildConfig.DEBUG);
+
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                endSearch();
+                return true;
+            }
+        });
         return true;
     }
 
@@ -236,9 +423,30 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             startActivity(settingsIntent);
             return true;
         }
+        if (id == R.id.action_perf_stats) {
+            showPerfStats();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    //show the percentiles of the measured stages, they are also written to the log so they can be exported with logcat
+    private void showPerfStats() {
+        String report = PerfStats.report();
+        Log.i(TAG, "Performance stats:\n" + report);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.perf_stats_title)
+                .setMessage(report.isEmpty() ? getString(R.string.perf_stats_empty) : report)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(R.string.perf_stats_reset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        PerfStats.reset();
+                    }
+                })
+                .show();
+    }
+
     //check if there is available internet connection
     boolean isConnectedToNetwork() {
         ConnectivityManager connectivityManager = (ConnectivityManager) this.getSystemService(Context.CONNECTIVITY_SERVICE);
@@ -254,4 +462,9 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         loadingSpinner = findViewById(R.id.loading_spinner);
         loadingSpinner.setVisibility(View.GONE);
     }
+
+    //show the progress bar above the list while some of the categories are still being downloaded
+    void showPendingSections(boolean pending) {
+        findViewById(R.id.pending_sections_progress).setVisibility(pending ? View.VISIBLE : View.GONE);
+    }
 }
@@ -0,0 +1,112 @@
+package com.example.android.guardiannews;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Runs a batch of query urls at the same time on a fixed-size thread pool
+//The whole batch shares one deadline, and the results are merged in the order of the url list,
+//so the batch takes as long as the slowest single request instead of the sum of all of them
+final class ParallelFetcher<T> {
+
+    //the task that downloads and parses the items of one query url
+    interface Fetch<T> {
+        List<T> fetch(String url);
+    }
+
+    //told about every query as soon as it is done, on the thread that ran it
+    interface Listener<T> {
+        //index is the position of the url in the list, items is null if the query failed
+        void onFetched(int index, List<T> items);
+    }
+
+    private final ExecutorService executor;
+    private final long deadlineMillis;
+
+    ParallelFetcher(int poolSize, long deadlineMillis) {
+        this.executor = Executors.newFixedThreadPool(poolSize, new FetchThreadFactory());
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    //send every query at once and wait until all of them are done or the deadline is over
+    //queries that fail or don't finish in time are left out of the result
+    List<T> fetchAll(List<String> urls, Fetch<T> fetch) throws InterruptedException {
+        List<T> result = new ArrayList<>();
+        for (List<T> items : fetchEach(urls, fetch)) {
+            if (items != null) {
+                result.addAll(items);
+            }
+        }
+        return result;
+    }
+
+    //send every query at once and return the items of each query separately, in the order of the urls
+    //the list of a query that failed or didn't finish in time is null
+    List<List<T>> fetchEach(List<String> urls, Fetch<T> fetch) throws InterruptedException {
+        return fetchEach(urls, fetch, null);
+    }
+
+    //the same as fetchEach, and the listener gets the items of each query as soon as it is done,
+    //so they can be used before the slowest query of the batch finishes
+    List<List<T>> fetchEach(List<String> urls, final Fetch<T> fetch, final Listener<T> listener) throws InterruptedException {
+        List<Callable<List<T>>> tasks = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            final String url = urls.get(i);
+            final int index = i;
+            tasks.add(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    List<T> items = null;
+                    try {
+                        items = fetch.fetch(url);
+                        return items;
+                    } finally {
+                        //a failed query is reported too, so the listener knows it is not pending any more
+                        if (listener != null) {
+                            listener.onFetched(index, items);
+                        }
+                    }
+                }
+            });
+        }
+
+        //invokeAll returns the futures in the same order as the tasks and cancels the unfinished ones at the deadline
+        List<Future<List<T>>> futures = executor.invokeAll(tasks, deadlineMillis, TimeUnit.MILLISECONDS);
+
+        List<List<T>> results = new ArrayList<>(futures.size());
+        for (Future<List<T>> future : futures) {
+            List<T> items = null;
+            try {
+                items = future.get();
+            } catch (CancellationException | ExecutionException e) {
+                //this query timed out or failed, the others are still shown
+            }
+            results.add(items);
+        }
+        return results;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //daemon threads, so an idle pool never keeps the process alive
+    private static class FetchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ArticleFetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
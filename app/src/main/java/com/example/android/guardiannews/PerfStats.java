@@ -0,0 +1,129 @@
+package com.example.android.guardiannews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Registry of the durations measured at the stages of loading and showing the articles
+//Every stage keeps its last SAMPLE_COUNT durations in a ring buffer, so recording a duration allocates nothing,
+//and the percentiles are calculated from them only when the report is made
+final class PerfStats {
+    static final int SAMPLE_COUNT = 512;
+
+    //the stages in alphabetical order, so the report is always listed the same way
+    private static final Map<String, Samples> stages = new TreeMap<>();
+
+    private PerfStats() {
+    }
+
+    //record one duration of the stage, in nanoseconds
+    static void record(String stage, long nanos) {
+        Samples samples;
+        synchronized (stages) {
+            samples = stages.get(stage);
+            if (samples == null) {
+                samples = new Samples(stage);
+                stages.put(stage, samples);
+            }
+        }
+        samples.add(nanos);
+    }
+
+    //the summary of every stage recorded since the last reset
+    static List<Summary> snapshot() {
+        List<Samples> allSamples;
+        synchronized (stages) {
+            allSamples = new ArrayList<>(stages.values());
+        }
+        List<Summary> summaries = new ArrayList<>(allSamples.size());
+        for (Samples samples : allSamples) {
+            Summary summary = samples.summarize();
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+
+    //one line for each stage, e.g. to be shown in a dialog or written to the log
+    static String report() {
+        StringBuilder report = new StringBuilder();
+        for (Summary summary : snapshot()) {
+            report.append(summary).append('\n');
+        }
+        return report.toString();
+    }
+
+    static void reset() {
+        synchronized (stages) {
+            stages.clear();
+        }
+    }
+
+    //the count and the percentiles of the durations of a stage, in nanoseconds
+    static class Summary {
+        final String stage;
+        final long count;
+        final long p50;
+        final long p90;
+        final long p99;
+        final long max;
+
+        Summary(String stage, long count, long p50, long p90, long p99, long max) {
+            this.stage = stage;
+            this.count = count;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        @Override
+        public String toString() {
+            return stage + ": n=" + count + " p50=" + formatMillis(p50) + " p90=" + formatMillis(p90)
+                    + " p99=" + formatMillis(p99) + " max=" + formatMillis(max) + " ms";
+        }
+
+        //milliseconds with two decimals, the binds of a list row take only a fraction of a millisecond
+        private static String formatMillis(long nanos) {
+            long hundredths = nanos / 10000;
+            long fraction = hundredths % 100;
+            return hundredths / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+        }
+    }
+
+    //the ring buffer of the last durations of one stage
+    private static class Samples {
+        private final String stage;
+        private final long[] durations = new long[SAMPLE_COUNT];
+        private long count = 0;
+
+        Samples(String stage) {
+            this.stage = stage;
+        }
+
+        synchronized void add(long nanos) {
+            durations[(int) (count % SAMPLE_COUNT)] = nanos;
+            count++;
+        }
+
+        synchronized Summary summarize() {
+            int size = (int) Math.min(count, SAMPLE_COUNT);
+            if (size == 0) {
+                return null;
+            }
+            long[] sorted = Arrays.copyOf(durations, size);
+            Arrays.sort(sorted);
+            return new Summary(stage, count, percentile(sorted, 50), percentile(sorted, 90),
+                    percentile(sorted, 99), sorted[size - 1]);
+        }
+
+        //nearest-rank percentile of the sorted durations
+        private static long percentile(long[] sorted, int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+}
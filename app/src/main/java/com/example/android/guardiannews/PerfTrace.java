@@ -0,0 +1,70 @@
+package com.example.android.guardiannews;
+
+import android.os.Build;
+import android.os.Trace;
+
+//Timing of the stages of loading and showing the articles
+//Each stage is a Trace section, so it shows up in systrace, and its duration is recorded in PerfStats
+//The tracing is off by default (the JVM benchmarks and the release build never call into Trace),
+//MainActivity turns it on in debug builds
+final class PerfTrace {
+    //the names of the measured stages
+    static final String URL_BUILD = "url_build";
+    static final String HTTP_DNS = "http_dns";
+    static final String HTTP_CONNECT = "http_connect";
+    static final String HTTP_TTFB = "http_ttfb";
+    static final String HTTP_BODY = "http_body";
+    static final String PARSE = "parse";
+    static final String MERGE = "merge";
+    static final String DIFF = "diff";
+    static final String BIND = "bind";
+
+    private static volatile boolean enabled = false;
+
+    private PerfTrace() {
+    }
+
+    static void setEnabled(boolean traceEnabled) {
+        enabled = traceEnabled;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    //start a stage on the current thread, return the start time to be passed to end
+    static long begin(String stage) {
+        if (!enabled) {
+            return 0;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(stage);
+        }
+        return System.nanoTime();
+    }
+
+    //end the stage started by begin on the same thread, and record its duration
+    static void end(String stage, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        PerfStats.record(stage, duration);
+    }
+
+    //record the phases of an HTTP request, they are measured by the HttpFetcher
+    static void recordHttp(HttpFetcher.Timings timings) {
+        if (!enabled) {
+            return;
+        }
+        if (timings.dns != HttpFetcher.Timings.UNAVAILABLE) {
+            PerfStats.record(HTTP_DNS, timings.dns);
+        }
+        PerfStats.record(HTTP_CONNECT, timings.connect);
+        PerfStats.record(HTTP_TTFB, timings.timeToFirstByte);
+        PerfStats.record(HTTP_BODY, timings.body);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.android.guardiannews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Decides which sections are asked for in the same query
+//The section parameter of the Guardian API takes several sections joined with "|" (OR), so the selected categories
+//are folded into as few requests as the page size limit of the API allows, each asking for the articles of all its sections
+//The combined responses are split back into the sections by the category of their articles
+//In the per-section mode every section gets its own query, so each category gets its full page of articles
+final class QueryPlanner {
+    //the largest page-size the API accepts
+    static final int MAX_PAGE_SIZE = 200;
+    //the OR operator of the section parameter
+    static final String SECTION_SEPARATOR = "|";
+
+    private QueryPlanner() {
+    }
+
+    //one planned query: the sections it asks for and the number of articles of the page
+    static final class Query {
+        final List<String> sectionIds;
+        final int pageSize;
+
+        Query(List<String> sectionIds, int pageSize) {
+            this.sectionIds = sectionIds;
+            this.pageSize = pageSize;
+        }
+
+        //the value of the section parameter
+        String sectionParameter() {
+            return joinSections(sectionIds);
+        }
+    }
+
+    //plan the queries of the sections, pageSize is the number of articles asked for each section
+    //the sections are sorted, so the same selection always gets the same urls (and the same cache entries)
+    static List<Query> plan(Collection<String> sectionIds, int pageSize, boolean perSection) {
+        List<String> sorted = new ArrayList<>(sectionIds);
+        Collections.sort(sorted);
+
+        //the page size is scaled with the number of sections, so a query can hold as many sections as fit into the limit
+        int sectionsPerQuery = perSection || pageSize <= 0 ? 1 : Math.max(1, MAX_PAGE_SIZE / pageSize);
+
+        List<Query> queries = new ArrayList<>();
+        for (int start = 0; start < sorted.size(); start += sectionsPerQuery) {
+            List<String> group = sorted.subList(start, Math.min(sorted.size(), start + sectionsPerQuery));
+            queries.add(new Query(new ArrayList<>(group), pageSize * group.size()));
+        }
+        return queries;
+    }
+
+    static String joinSections(List<String> sectionIds) {
+        StringBuilder joined = new StringBuilder();
+        for (String sectionId : sectionIds) {
+            if (joined.length() > 0) {
+                joined.append(SECTION_SEPARATOR);
+            }
+            joined.append(sectionId);
+        }
+        return joined.toString();
+    }
+
+    //the sections of a section parameter, an empty list if it is null
+    static List<String> splitSections(String sectionParameter) {
+        if (sectionParameter == null || sectionParameter.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(sectionParameter.split("\\" + SECTION_SEPARATOR)));
+    }
+
+    //split the articles of a combined query into the lists of their sections, keeping their order
+    static Map<String, List<Article>> splitBySection(List<Article> articles) {
+        CategoryRegistry categories = CategoryRegistry.get();
+        Map<String, List<Article>> bySection = new LinkedHashMap<>();
+        for (Article article : articles) {
+            String sectionId = categories.sectionIdOf(article.getCategoryId());
+            if (sectionId == null) {
+                continue;
+            }
+            List<Article> sectionArticles = bySection.get(sectionId);
+            if (sectionArticles == null) {
+                sectionArticles = new ArrayList<>();
+                bySection.put(sectionId, sectionArticles);
+            }
+            sectionArticles.add(article);
+        }
+        return bySection;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.android.guardiannews;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+//Shares the result of a request between the callers asking for the same key at the same time
+//The first caller runs the request, the others wait for its future instead of sending the same request again,
+//and the result is kept for a short freshness window, so a repeated request (e.g. after a rotation) is answered from memory
+//Null results (failed requests) are not kept, the next caller tries again
+final class RequestCoalescer<T> {
+
+    //the request behind a key, it runs on the thread of the first caller
+    interface Request<T> {
+        T load(String key);
+    }
+
+    private final long freshnessNanos;
+    private final Map<String, InFlight<T>> inFlight = new HashMap<>();
+    private final Map<String, Result<T>> recentResults = new HashMap<>();
+
+    RequestCoalescer(long freshnessMillis) {
+        this.freshnessNanos = freshnessMillis * 1000000;
+    }
+
+    //return the result of the request of the key, sharing it with the concurrent and recent callers
+    T get(final String key, final Request<T> request) {
+        FutureTask<T> task;
+        boolean owner = false;
+        synchronized (this) {
+            Result<T> recent = recentResults.get(key);
+            if (recent != null && !recent.isExpired(System.nanoTime())) {
+                return recent.value;
+            }
+            InFlight<T> shared = inFlight.get(key);
+            if (shared != null) {
+                shared.callers++;
+                task = shared.task;
+            } else {
+                task = new FutureTask<>(new Callable<T>() {
+                    @Override
+                    public T call() {
+                        return request.load(key);
+                    }
+                });
+                inFlight.put(key, new InFlight<>(task));
+                owner = true;
+            }
+        }
+
+        T result = null;
+        try {
+            if (owner) {
+                task.run();
+            }
+            result = task.get();
+        } catch (InterruptedException e) {
+            //this caller was abandoned, the request still finishes for the others
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+        } finally {
+            if (owner) {
+                finish(key, result);
+            }
+        }
+        return result;
+    }
+
+    //the number of callers waiting for the request of the key in flight, 0 if it isn't requested
+    synchronized int callersOf(String key) {
+        InFlight<T> shared = inFlight.get(key);
+        return shared != null ? shared.callers : 0;
+    }
+
+    //forget every recent result, the next request of every key goes out again
+    synchronized void clear() {
+        recentResults.clear();
+    }
+
+    private synchronized void finish(String key, T result) {
+        inFlight.remove(key);
+        long now = System.nanoTime();
+        //drop the expired results, so the map only holds the keys of the last few seconds
+        Iterator<Result<T>> iterator = recentResults.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        if (result != null && freshnessNanos > 0) {
+            recentResults.put(key, new Result<>(result, now + freshnessNanos));
+        }
+    }
+
+    //a request in flight and the number of its callers, the first one runs it
+    private static class InFlight<T> {
+        final FutureTask<T> task;
+        int callers = 1;
+
+        InFlight(FutureTask<T> task) {
+            this.task = task;
+        }
+    }
+
+    //a result and the time it stops being fresh
+    private static class Result<T> {
+        final T value;
+        final long expiresAt;
+
+        Result(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
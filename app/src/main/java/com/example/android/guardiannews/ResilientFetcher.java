@@ -0,0 +1,171 @@
+package com.example.android.guardiannews;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+//Retries the requests that failed for a reason that may go away: an IOException (e.g. a timeout or a dropped connection),
+//429 Too Many Requests and the 5xx server errors, every other response is returned as it is
+//The waits between the attempts grow exponentially up to a limit, and a random part of each wait is left out (jitter),
+//so the sections that failed together don't come back to the server at the same moment
+//A Retry-After header of the server is waited for instead, unless it asks for a longer wait than the limit
+//The requests that fail after every attempt are counted by the circuit breaker of their section,
+//and only a response below 400 counts as a success: a client error says nothing about the health of the server
+final class ResilientFetcher implements HttpFetcher {
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY = 500; /* milliseconds, the wait after the first attempt */
+    static final long DEFAULT_MAX_DELAY = 8000; /* milliseconds */
+    static final int DEFAULT_FAILURE_THRESHOLD = 2;    //failed requests in a row that open the circuit of a section
+    static final long DEFAULT_OPEN_TIME = 5 * 60 * 1000; /* milliseconds */
+
+    private static final int HTTP_CLIENT_ERROR = 400;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final HttpFetcher fetcher;
+    private final CircuitBreaker breaker;
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random;
+
+    ResilientFetcher(HttpFetcher fetcher) {
+        this(fetcher, new CircuitBreaker(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_TIME),
+                DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, new Random());
+    }
+
+    ResilientFetcher(HttpFetcher fetcher, CircuitBreaker breaker, int maxAttempts, long baseDelay, long maxDelay, Random random) {
+        this.fetcher = fetcher;
+        this.breaker = breaker;
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.random = random;
+    }
+
+    //send the request until it succeeds, fails for good or runs out of attempts
+    //the response or the exception of the last attempt is returned
+    @Override
+    public Response fetch(URL url) throws IOException {
+        String section = sectionOf(url);
+        if (!breaker.allowRequest(section)) {
+            throw new CircuitBreaker.OpenException(section);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            Response response = null;
+            IOException failure = null;
+            try {
+                response = fetcher.fetch(url);
+            } catch (IOException e) {
+                //the load has been cancelled, this is not a failure of the section
+                if (Thread.currentThread().isInterrupted()) {
+                    breaker.recordInconclusive(section);
+                    throw e;
+                }
+                failure = e;
+            }
+            if (response != null && !isRetryable(response.getResponseCode())) {
+                if (response.getResponseCode() < HTTP_CLIENT_ERROR) {
+                    breaker.recordSuccess(section);
+                } else {
+                    breaker.recordInconclusive(section);
+                }
+                return response;
+            }
+
+            //a negative delay means that the server asked for a longer wait than the limit
+            long delay = response != null ? retryDelay(response, attempt) : backoffDelay(attempt);
+            if (attempt >= maxAttempts || delay < 0) {
+                breaker.recordFailure(section);
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+
+            if (response != null) {
+                response.close();
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                breaker.recordInconclusive(section);
+                throw new InterruptedIOException("Interrupted while waiting to retry " + url);
+            }
+        }
+    }
+
+    @Override
+    public void remember(URL url, Response response) {
+        fetcher.remember(url, response);
+    }
+
+    @Override
+    public void forget(URL url) {
+        fetcher.forget(url);
+    }
+
+    static boolean isRetryable(int responseCode) {
+        return responseCode == HTTP_TOO_MANY_REQUESTS || responseCode >= HTTP_SERVER_ERROR;
+    }
+
+    //the wait after the given attempt: the exponential delay, of which a random part up to the half is left out
+    long backoffDelay(int attempt) {
+        long delay = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+        long half = delay / 2;
+        return delay - (long) (random.nextDouble() * half);
+    }
+
+    //the wait asked for by the Retry-After header, or the backoff delay if the response has none
+    long retryDelay(Response response, int attempt) {
+        long retryAfter = parseRetryAfter(response.getRetryAfter(), System.currentTimeMillis());
+        if (retryAfter < 0) {
+            return backoffDelay(attempt);
+        }
+        return retryAfter <= maxDelay ? retryAfter : -1;
+    }
+
+    //the Retry-After header in milliseconds, either delay-seconds or an HTTP date, -1 if it is missing or invalid
+    static long parseRetryAfter(String value, long now) {
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            //not a number of seconds, so it must be a date
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(value);
+            return Math.max(0, date.getTime() - now);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    //the circuit of a query is the section it asks for, the other requests share the circuit of their path
+    static String sectionOf(URL url) {
+        String query = url.getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("section=")) {
+                    return parameter.substring("section=".length());
+                }
+            }
+        }
+        return url.getPath();
+    }
+}
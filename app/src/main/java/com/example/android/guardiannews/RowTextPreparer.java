@@ -0,0 +1,85 @@
+package com.example.android.guardiannews;
+
+import android.os.Build;
+import android.text.Html;
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.style.ImageSpan;
+import android.text.style.StyleSpan;
+
+//Prepares the texts of the list rows on the diff thread, so binding a row only sets ready-made texts on its views
+//The trail text of the API is HTML: it is parsed into a Spanned text once, keeping only the bold and italic styles
+//The texts are also laid out once at the width of the row with the paint of its view. PrecomputedText would keep
+//the measured layout for a TextView, but it needs API 28 (and the support library at 27 has no PrecomputedTextCompat),
+//so for the xml rows the measurement warms the text layout cache of the system, which is shared by every thread,
+//and the TextView that measures the same words with the same paint on the main thread finds them already measured
+//ArticleRowView draws the layouts themselves, so for the custom rows they are kept with the article
+final class RowTextPreparer {
+
+    private RowTextPreparer() {
+    }
+
+    //the trail text as it is shown: the HTML parsed and sanitized, a plain string if no style is left
+    static CharSequence formatTrailText(String html) {
+        if (html == null || html.isEmpty()) {
+            return html;
+        }
+        //plain text has nothing to parse
+        if (html.indexOf('<') < 0 && html.indexOf('&') < 0) {
+            return html;
+        }
+
+        Spanned parsed = fromHtml(html);
+        SpannableStringBuilder text = new SpannableStringBuilder(parsed);
+        //only the styles are kept: the row itself is the link to the article, and the images are never downloaded
+        //an image leaves its placeholder character behind, so its text is removed with it
+        Object[] spans = text.getSpans(0, text.length(), Object.class);
+        for (int i = spans.length - 1; i >= 0; i--) {
+            Object span = spans[i];
+            if (span instanceof StyleSpan) {
+                continue;
+            }
+            int start = text.getSpanStart(span);
+            int end = text.getSpanEnd(span);
+            text.removeSpan(span);
+            if (span instanceof ImageSpan && start >= 0 && end <= text.length()) {
+                text.delete(start, end);
+            }
+        }
+
+        //the paragraphs end with line breaks, the row has no space for them
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        text.delete(end, text.length());
+
+        if (text.getSpans(0, text.length(), StyleSpan.class).length == 0) {
+            return text.toString();
+        }
+        //TextView keeps a SpannedString as it is, any other Spanned would be copied each time the row is bound
+        return new SpannedString(text);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Spanned fromHtml(String html) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Html.fromHtml(html, Html.FROM_HTML_MODE_COMPACT);
+        }
+        return Html.fromHtml(html);
+    }
+
+    //lay out the text at the given width with the paint of its view, like the TextView or ArticleRowView will
+    //null if there is nothing to lay out
+    @SuppressWarnings("deprecation")
+    static StaticLayout measure(CharSequence text, TextPaint paint, int width) {
+        if (text == null || text.length() == 0 || width <= 0) {
+            return null;
+        }
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.android.guardiannews;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+//Deduplicates the string values that repeat across the articles of one load, e.g. the names of the contributors
+//The parsers read a new String for every occurrence, the pool hands out the first equal instance instead,
+//so the lists kept by the caches share one copy of each repeated value
+//A pool lives only as long as its load, unlike String.intern() it never keeps the values of earlier loads,
+//and the categories of a load can be parsed into the same pool at the same time
+final class StringPool {
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+
+    //return the pooled instance equal to value, value itself is pooled if it is the first one
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = values.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    //the number of distinct values in the pool
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.android.guardiannews;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+//Sends the GET requests of the query urls with HttpURLConnection
+//The connections are never disconnected, their bodies are read to the end and closed instead,
+//so the keep-alive sockets go back to the connection pool and the next query to the Guardian host skips the handshakes
+//It remembers the ETag and Last-Modified validators of each url, so the next request of the same url is conditional
+//and the server can answer with 304 Not Modified and an empty body when nothing has changed,
+//and it asks for gzip compressed responses and decodes them
+//The size of the connection pool is set once by GuardianNewsApp
+final class UrlConnectionFetcher implements HttpFetcher {
+    private final int readTimeout;
+    private final int connectTimeout;
+
+    //the validators of the last response of each url that has been processed successfully
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+    private static class Validators {
+        final String eTag;
+        final String lastModified;
+
+        Validators(String eTag, String lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    UrlConnectionFetcher(int readTimeout, int connectTimeout) {
+        this.readTimeout = readTimeout;
+        this.connectTimeout = connectTimeout;
+    }
+
+    //send a GET request, conditional if the url has been processed before
+    @Override
+    public Response fetch(URL url) throws IOException {
+        //HttpURLConnection doesn't tell whether it looked the host up or reused a pooled connection,
+        //so the lookup isn't measured on its own, it is part of the connect time of a new connection
+        Timings timings = new Timings();
+
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        InputStream rawBody = null;
+        try {
+            urlConnection.setRequestMethod("GET");
+            urlConnection.setReadTimeout(readTimeout);
+            urlConnection.setConnectTimeout(connectTimeout);
+            //when the encoding is asked for explicitly, HttpURLConnection doesn't decode the body, so it is done below
+            urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+
+            Validators known = validators.get(url.toString());
+            if (known != null) {
+                if (known.eTag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", known.eTag);
+                }
+                if (known.lastModified != null) {
+                    urlConnection.setRequestProperty("If-Modified-Since", known.lastModified);
+                }
+            }
+
+            //a pooled connection is reused without a new TCP and TLS handshake, so connecting takes almost no time
+            long start = System.nanoTime();
+            urlConnection.connect();
+            timings.connect = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int responseCode = urlConnection.getResponseCode();
+            timings.timeToFirstByte = System.nanoTime() - start;
+
+            rawBody = responseCode < 400 ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+            TimingInputStream timedBody = rawBody != null ? new TimingInputStream(rawBody, timings) : null;
+
+            InputStream body = null;
+            if (responseCode == HTTP_OK && timedBody != null) {
+                body = timedBody;
+                if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                    body = new GZIPInputStream(timedBody);
+                }
+            }
+            return new Response(responseCode, body,
+                    urlConnection.getHeaderField("ETag"), urlConnection.getHeaderField("Last-Modified"),
+                    urlConnection.getHeaderField("Retry-After"), timings, new PooledConnection(timedBody));
+        } catch (IOException e) {
+            //a broken connection must not go back to the pool
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public void remember(URL url, Response response) {
+        String eTag = response.getETag();
+        String lastModified = response.getLastModified();
+        if (eTag != null || lastModified != null) {
+            validators.put(url.toString(), new Validators(eTag, lastModified));
+        } else {
+            validators.remove(url.toString());
+        }
+    }
+
+    @Override
+    public void forget(URL url) {
+        validators.remove(url.toString());
+    }
+
+    //releases the connection back to the pool by reading the rest of the body and closing the stream
+    private static class PooledConnection implements Closeable {
+        private final InputStream body;
+
+        PooledConnection(InputStream body) {
+            this.body = body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body == null) {
+                return;
+            }
+            try {
+                byte[] buffer = new byte[1024];
+                while (body.read(buffer) != -1) {
+                    //drop the unread bytes
+                }
+            } finally {
+                body.close();
+            }
+        }
+    }
+
+    //counts the bytes received and measures the time until the last one arrived
+    private static class TimingInputStream extends FilterInputStream {
+        private final Timings timings;
+        private final long start;
+        private boolean finished;
+
+        TimingInputStream(InputStream in, Timings timings) {
+            super(in);
+            this.timings = timings;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                finish();
+            } else {
+                timings.bodyBytes++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count == -1) {
+                finish();
+            } else {
+                timings.bodyBytes += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                timings.body = System.nanoTime() - start;
+            }
+        }
+    }
+}
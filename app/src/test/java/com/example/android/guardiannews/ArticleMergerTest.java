@@ -0,0 +1,102 @@
+package com.example.android.guardiannews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleMergerTest {
+
+    @Test
+    public void merge_newestFirst_sameOrderAsSortingTheWholeList() {
+        Random random = new Random(42);
+        List<List<Article>> sections = new ArrayList<>();
+        List<Article> all = new ArrayList<>();
+        for (int section = 0; section < 6; section++) {
+            List<Article> articles = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                articles.add(article("https://example.com/" + section + "/" + i, random.nextInt(1000000) * 1000L));
+            }
+            ArticleUtils.sortArticles(articles, true);
+            sections.add(articles);
+            all.addAll(articles);
+        }
+
+        List<Article> merged = ArticleMerger.merge(sections, true);
+
+        assertEquals(all.size(), merged.size());
+        ArticleUtils.sortArticles(all, true);
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.get(i).getPublicationMillis(), merged.get(i).getPublicationMillis());
+        }
+    }
+
+    @Test
+    public void merge_oldestFirst() {
+        List<Article> first = Arrays.asList(article("a", 1000), article("c", 3000), article("e", 5000));
+        List<Article> second = Arrays.asList(article("b", 2000), article("d", 4000));
+
+        List<Article> merged = ArticleMerger.merge(Arrays.asList(first, second), false);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), urls(merged));
+    }
+
+    @Test
+    public void merge_removesArticlesOfMoreThanOneSection() {
+        List<Article> science = Arrays.asList(article("shared", 3000), article("science", 1000));
+        List<Article> environment = Arrays.asList(article("environment", 2000), article("shared", 3000));
+
+        List<Article> merged = ArticleMerger.merge(Arrays.asList(science, environment), true);
+
+        assertEquals(Arrays.asList("shared", "environment", "science"), urls(merged));
+    }
+
+    @Test
+    public void merge_skipsFailedAndEmptySections() {
+        List<Article> world = Collections.singletonList(article("world", 1000));
+        List<List<Article>> sections = new ArrayList<>();
+        sections.add(null);
+        sections.add(world);
+        sections.add(new ArrayList<Article>());
+
+        assertEquals(Collections.singletonList("world"), urls(ArticleMerger.merge(sections, true)));
+        assertTrue(ArticleMerger.merge(new ArrayList<List<Article>>(), true).isEmpty());
+    }
+
+    @Test
+    public void mergeDelta_putsTheNewArticlesOnTopAndKeepsThePageSize() {
+        List<Article> held = Arrays.asList(article("c", 3000), article("b", 2000), article("a", 1000));
+        Article updated = article("c", 3000);
+        List<Article> delta = Arrays.asList(article("d", 4000), updated);
+
+        List<Article> merged = ArticleMerger.mergeDelta(delta, held, 3);
+
+        assertEquals(3, merged.size());
+        assertEquals("d", merged.get(0).getArticleUrl());
+        //the article found in both lists is the downloaded one
+        assertSame(updated, merged.get(1));
+        assertEquals("b", merged.get(2).getArticleUrl());
+    }
+
+    private static Article article(String url, long publicationMillis) {
+        Article article = new Article();
+        article.setArticleUrl(url);
+        article.setPublicationMillis(publicationMillis);
+        return article;
+    }
+
+    private static List<String> urls(List<Article> articles) {
+        List<String> urls = new ArrayList<>();
+        for (Article article : articles) {
+            urls.add(article.getArticleUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.guardiannews;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleTest {
+
+    @Test
+    public void parsePublicationDate_matchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] dates = {"1970-01-01T00:00:00Z", "2000-02-29T23:59:59Z", "2018-10-04T16:30:12Z",
+                "2018-12-31T00:00:01Z", "2100-03-01T12:00:00Z", "1969-12-31T23:59:59Z"};
+        for (String date : dates) {
+            assertEquals(date, format.parse(date).getTime(), Article.parsePublicationDate(date));
+        }
+    }
+
+    @Test
+    public void parsePublicationDate_malformedDateIsZero() {
+        assertEquals(0, Article.parsePublicationDate(null));
+        assertEquals(0, Article.parsePublicationDate(""));
+        assertEquals(0, Article.parsePublicationDate("2018-10-04"));
+        assertEquals(0, Article.parsePublicationDate("2018-13-04T16:30:12Z"));
+    }
+
+    @Test
+    public void dateAndTime_formattedFromTimestamp() {
+        Article article = article("2018-10-04T06:05:59Z");
+        assertEquals("2018-10-04", article.getPublicationDate());
+        assertEquals("06:05", article.getPublicationTime());
+        //the formatted strings are kept after the first call
+        assertSame(article.getPublicationDate(), article.getPublicationDate());
+
+        Article beforeEpoch = article("1969-12-31T23:59:59Z");
+        assertEquals("1969-12-31", beforeEpoch.getPublicationDate());
+        assertEquals("23:59", beforeEpoch.getPublicationTime());
+    }
+
+    @Test
+    public void sortArticles_ordersArticlesOfTheSameMinuteBySeconds() {
+        Article first = article("2018-10-04T16:30:01Z");
+        Article second = article("2018-10-04T16:30:30Z");
+        Article third = article("2018-10-04T16:30:59Z");
+        Article nextDay = article("2018-10-05T00:00:00Z");
+
+        List<Article> articles = new ArrayList<>(Arrays.asList(second, nextDay, third, first));
+        ArticleUtils.sortArticles(articles, true);
+        assertEquals(Arrays.asList(nextDay, third, second, first), articles);
+
+        ArticleUtils.sortArticles(articles, false);
+        assertEquals(Arrays.asList(first, second, third, nextDay), articles);
+        assertTrue(first.compareTo(article("2018-10-04T16:30:01Z")) == 0);
+    }
+
+    private static Article article(String webPublicationDate) {
+        Article article = new Article();
+        article.setPublicationMillis(Article.parsePublicationDate(webPublicationDate));
+        return article;
+    }
+}
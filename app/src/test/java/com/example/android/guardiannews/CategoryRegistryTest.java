@@ -0,0 +1,72 @@
+package com.example.android.guardiannews;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class CategoryRegistryTest {
+
+    @Test
+    public void load_registersCategoriesInOrder() {
+        CategoryRegistry registry = new CategoryRegistry();
+        registry.load(new String[]{"science", "world"}, new int[]{0xFF272C74, 0xFF3E448A}, 0xFF212121);
+
+        int science = registry.idOf("science", "Science");
+        int world = registry.idOf("world", "World news");
+        assertEquals(1, science);
+        assertEquals(2, world);
+        //the name is the section name of the API, not the label of the settings
+        assertEquals("World news", registry.nameOf(world));
+        assertEquals(0xFF3E448A, registry.colorOf(world));
+        assertEquals("science", registry.sectionIdOf(science));
+    }
+
+    @Test
+    public void idOf_addsUnknownSectionWithDefaultColor() {
+        CategoryRegistry registry = new CategoryRegistry();
+        registry.load(new String[]{"science"}, new int[]{0xFF272C74}, 0xFF212121);
+
+        int football = registry.idOf("football", "Football");
+        assertNotEquals(CategoryRegistry.UNKNOWN, football);
+        assertEquals(football, registry.idOf("football", "Football"));
+        assertEquals("Football", registry.nameOf(football));
+        assertEquals(0xFF212121, registry.colorOf(football));
+    }
+
+    @Test
+    public void idOf_missingSectionIsUnknown() {
+        CategoryRegistry registry = new CategoryRegistry();
+        assertEquals(CategoryRegistry.UNKNOWN, registry.idOf(null, "Science"));
+        assertEquals(CategoryRegistry.UNKNOWN, registry.idOf("", null));
+        assertNull(registry.nameOf(CategoryRegistry.UNKNOWN));
+    }
+
+    @Test
+    public void load_updatesSectionParsedBeforeLoading() {
+        CategoryRegistry registry = new CategoryRegistry();
+        int world = registry.idOf("world", "World news");
+        registry.load(new String[]{"world"}, new int[]{0xFF3E448A}, 0xFF212121);
+
+        assertEquals(world, registry.idOf("world", "World news"));
+        assertEquals("World news", registry.nameOf(world));
+        assertEquals(0xFF3E448A, registry.colorOf(world));
+    }
+
+    @Test
+    public void parser_resolvesSectionIdOnce() throws IOException {
+        String json = "{\"response\":{\"results\":[{\"sectionId\":\"technology\",\"sectionName\":\"Technology\","
+                + "\"webPublicationDate\":\"2018-10-04T16:30:12Z\",\"webTitle\":\"t\",\"webUrl\":\"u\"}]}}";
+        List<Article> articles = ArticleStreamParser.parse(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))));
+
+        Article article = articles.get(0);
+        assertEquals(CategoryRegistry.get().idOf("technology", null), article.getCategoryCase());
+        assertEquals("technology", CategoryRegistry.get().sectionIdOf(article.getCategoryId()));
+    }
+}
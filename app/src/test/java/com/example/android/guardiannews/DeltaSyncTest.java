@@ -0,0 +1,128 @@
+package com.example.android.guardiannews;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Refreshes a held page of articles from an InMemoryFetcher, and checks that only the new articles are downloaded
+ * and merged on top of the held ones.
+ */
+public class DeltaSyncTest {
+    private static final String QUERY_URL = "http://content.guardianapis.com/search?section=science&page-size=5&order-by=newest&page=1";
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long NOON = 1538395200000L;    //2018-10-01T12:00:00Z
+    private static final int PAGE_SIZE = 5;
+
+    private InMemoryFetcher server;
+
+    @Before
+    public void setUp() {
+        server = new InMemoryFetcher();
+        ArticleUtils.setHttpFetcher(server);
+    }
+
+    @Test
+    public void deltaUrl_asksForTheArticlesSinceTheNewestOne() {
+        assertEquals(QUERY_URL + "&from-date=2018-10-01T12:00:00Z", DeltaSync.deltaUrl(QUERY_URL, NOON));
+    }
+
+    @Test
+    public void nothingHeld_downloadsTheWholePage() {
+        server.put(QUERY_URL, response(NOON, 5));
+
+        List<Article> articles = DeltaSync.fetch(QUERY_URL, null, PAGE_SIZE, null, new StringPool());
+
+        assertEquals(5, articles.size());
+    }
+
+    @Test
+    public void newArticles_areMergedOnTopOfTheHeldOnes() {
+        List<Article> held = parse(response(NOON, 5));
+        //two new articles, and the newest held one, which is published at the from-date
+        server.put(DeltaSync.deltaUrl(QUERY_URL, NOON), response(NOON + 2 * HOUR, 3));
+        HttpFetcher.Timings totals = new HttpFetcher.Timings();
+
+        List<Article> articles = DeltaSync.fetch(QUERY_URL, held, PAGE_SIZE, totals, new StringPool());
+
+        assertEquals(5, articles.size());
+        assertEquals(NOON + 2 * HOUR, articles.get(0).getPublicationMillis());
+        assertEquals(NOON + HOUR, articles.get(1).getPublicationMillis());
+        assertEquals(NOON, articles.get(2).getPublicationMillis());
+        assertEquals(NOON - 2 * HOUR, articles.get(4).getPublicationMillis());
+        //the bytes of three articles are downloaded instead of a whole page
+        assertEquals(response(NOON + 2 * HOUR, 3).length, totals.bodyBytes);
+    }
+
+    @Test
+    public void noNewArticles_keepsTheHeldOnes() {
+        List<Article> held = parse(response(NOON, 5));
+        server.put(DeltaSync.deltaUrl(QUERY_URL, NOON), response(NOON, 1));
+
+        List<Article> articles = DeltaSync.fetch(QUERY_URL, held, PAGE_SIZE, null, new StringPool());
+
+        assertEquals(5, articles.size());
+        for (int i = 0; i < articles.size(); i++) {
+            assertEquals(held.get(i).getArticleUrl(), articles.get(i).getArticleUrl());
+        }
+    }
+
+    @Test
+    public void fullDelta_replacesTheHeldArticles() {
+        List<Article> held = parse(response(NOON, 5));
+        server.put(DeltaSync.deltaUrl(QUERY_URL, NOON), response(NOON + 10 * HOUR, 5));
+
+        List<Article> articles = DeltaSync.fetch(QUERY_URL, held, PAGE_SIZE, null, new StringPool());
+
+        assertEquals(5, articles.size());
+        assertEquals(NOON + 6 * HOUR, articles.get(4).getPublicationMillis());
+    }
+
+    @Test
+    public void newestOf() {
+        List<Article> articles = parse(response(NOON, 3));
+
+        assertEquals(NOON, DeltaSync.newestOf(articles));
+        assertEquals(0, DeltaSync.newestOf(new ArrayList<Article>()));
+        assertEquals(0, DeltaSync.newestOf(null));
+    }
+
+    //a search response of count articles published an hour apart, the newest one at newestMillis
+    //the url of each article is its publication time, so the same time is the same article
+    private static byte[] response(long newestMillis, int count) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder json = new StringBuilder("{\"response\":{\"results\":[");
+        for (int i = 0; i < count; i++) {
+            long millis = newestMillis - i * HOUR;
+            String date = format.format(new Date(millis));
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"sectionId\":\"science\",\"sectionName\":\"Science\",\"webPublicationDate\":\"").append(date)
+                    .append("\",\"webTitle\":\"Article ").append(millis).append("\",\"webUrl\":\"https://www.theguardian.com/science/")
+                    .append(millis).append("\",\"fields\":{\"trailText\":\"\"},\"tags\":[]}");
+        }
+        json.append("]}}");
+        return json.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static List<Article> parse(byte[] response) {
+        try {
+            return ArticleStreamParser.parse(new ByteArrayInputStream(response));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.android.guardiannews;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times a batch of section queries against a local stub server that answers every section
+ * after an injected delay. The deadline and the order of the listener calls are checked with
+ * a stub fetch that holds its sections until the test lets them go, so they don't depend on timing.
+ */
+public class ParallelFetcherTest {
+    private static final String[] SECTIONS = {"cities", "environment", "global-development", "science", "technology", "world"};
+    private static final long[] LATENCIES = {300, 150, 400, 250, 100, 200}; /* milliseconds */
+
+    private HttpServer server;
+    private ParallelFetcher<String> fetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        for (int i = 0; i < SECTIONS.length; i++) {
+            server.createContext("/" + SECTIONS[i], new DelayedHandler(SECTIONS[i], LATENCIES[i]));
+        }
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (fetcher != null) {
+            fetcher.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void batchTakesAsLongAsTheSlowestSection() throws InterruptedException {
+        fetcher = new ParallelFetcher<>(SECTIONS.length, 5000);
+
+        long start = System.nanoTime();
+        List<String> result = fetcher.fetchAll(sectionUrls(), new HttpFetch());
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        long slowest = 0;
+        long sum = 0;
+        for (long latency : LATENCIES) {
+            slowest = Math.max(slowest, latency);
+            sum += latency;
+        }
+        assertEquals(SECTIONS.length, result.size());
+        assertTrue("batch took " + elapsed + " ms", elapsed >= slowest);
+        assertTrue("batch took " + elapsed + " ms, sequential would be " + sum + " ms", elapsed < sum);
+    }
+
+    @Test
+    public void resultsAreMergedInUrlOrder() throws InterruptedException {
+        fetcher = new ParallelFetcher<>(SECTIONS.length, 5000);
+
+        List<String> result = fetcher.fetchAll(sectionUrls(), new HttpFetch());
+
+        assertEquals(Arrays.asList(SECTIONS), result);
+    }
+
+    @Test
+    public void sectionsMissingTheDeadlineAreLeftOut() throws InterruptedException {
+        fetcher = new ParallelFetcher<>(SECTIONS.length, 500);
+        //these sections are held until the batch is over, the others are answered at once
+        GatedFetch fetch = new GatedFetch("cities", "global-development", "science");
+
+        List<String> result;
+        try {
+            result = fetcher.fetchAll(sectionUrls(), fetch);
+        } finally {
+            fetch.openAll();
+        }
+
+        assertEquals(Arrays.asList("environment", "technology", "world"), result);
+    }
+
+    @Test
+    public void listenerGetsEachSectionAsSoonAsItIsDone() throws InterruptedException {
+        fetcher = new ParallelFetcher<>(SECTIONS.length, 5000);
+        final List<String> releaseOrder = Arrays.asList("technology", "environment", "world", "science", "cities", "global-development");
+        final GatedFetch fetch = new GatedFetch(releaseOrder.subList(1, releaseOrder.size()).toArray(new String[0]));
+        final List<String> arrived = Collections.synchronizedList(new ArrayList<String>());
+
+        //each section is let go only after the listener got the one before it,
+        //so the batch can only finish if the listener is called while the other sections are still pending
+        List<List<String>> result = fetcher.fetchEach(sectionUrls(), fetch, new ParallelFetcher.Listener<String>() {
+            @Override
+            public void onFetched(int index, List<String> items) {
+                arrived.add(SECTIONS[index]);
+                assertEquals(Collections.singletonList(SECTIONS[index]), items);
+                int next = releaseOrder.indexOf(SECTIONS[index]) + 1;
+                if (next < releaseOrder.size()) {
+                    fetch.open(releaseOrder.get(next));
+                }
+            }
+        });
+
+        //the sections arrive in the order they were let go, the result is still in the order of the urls
+        assertEquals(releaseOrder, arrived);
+        assertEquals(SECTIONS.length, result.size());
+        for (int i = 0; i < SECTIONS.length; i++) {
+            assertEquals(Collections.singletonList(SECTIONS[i]), result.get(i));
+        }
+    }
+
+    @Test
+    public void listenerIsToldAboutFailedSections() throws InterruptedException {
+        fetcher = new ParallelFetcher<>(SECTIONS.length, 5000);
+        final List<Integer> failed = Collections.synchronizedList(new ArrayList<Integer>());
+        List<String> urls = sectionUrls();
+        urls.set(2, "http://127.0.0.1:" + server.getAddress().getPort() + "/missing");
+
+        fetcher.fetchEach(urls, new HttpFetch(), new ParallelFetcher.Listener<String>() {
+            @Override
+            public void onFetched(int index, List<String> items) {
+                if (items == null) {
+                    failed.add(index);
+                }
+            }
+        });
+
+        assertEquals(Collections.singletonList(2), failed);
+    }
+
+    private List<String> sectionUrls() {
+        List<String> urls = new ArrayList<>();
+        for (String section : SECTIONS) {
+            urls.add("http://127.0.0.1:" + server.getAddress().getPort() + "/" + section);
+        }
+        return urls;
+    }
+
+    //reads the body of the stub response as a single item
+    private static class HttpFetch implements ParallelFetcher.Fetch<String> {
+        @Override
+        public List<String> fetch(String url) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                InputStream in = connection.getInputStream();
+                StringBuilder body = new StringBuilder();
+                int c;
+                while ((c = in.read()) != -1) {
+                    body.append((char) c);
+                }
+                in.close();
+                return Collections.singletonList(body.toString());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    //returns the section of the url as its item, the held sections only after they are let go
+    //a held section that is still waiting at the deadline is interrupted and fails
+    private static class GatedFetch implements ParallelFetcher.Fetch<String> {
+        private final Map<String, CountDownLatch> gates = new HashMap<>();
+
+        GatedFetch(String... heldSections) {
+            for (String section : heldSections) {
+                gates.put(section, new CountDownLatch(1));
+            }
+        }
+
+        void open(String section) {
+            gates.get(section).countDown();
+        }
+
+        void openAll() {
+            for (CountDownLatch gate : gates.values()) {
+                gate.countDown();
+            }
+        }
+
+        @Override
+        public List<String> fetch(String url) {
+            String section = url.substring(url.lastIndexOf('/') + 1);
+            CountDownLatch gate = gates.get(section);
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return Collections.singletonList(section);
+        }
+    }
+
+    //answers with the section name after the injected latency
+    private static class DelayedHandler implements HttpHandler {
+        private final byte[] body;
+        private final long latency;
+
+        DelayedHandler(String section, long latency) {
+            this.body = section.getBytes(Charset.forName("UTF-8"));
+            this.latency = latency;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
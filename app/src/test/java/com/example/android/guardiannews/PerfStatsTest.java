@@ -0,0 +1,60 @@
+package com.example.android.guardiannews;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PerfStatsTest {
+
+    @After
+    public void resetStats() {
+        PerfStats.reset();
+    }
+
+    @Test
+    public void snapshot_nearestRankPercentiles() {
+        //1 to 100 ms in a shuffled order
+        for (int i = 0; i < 100; i++) {
+            PerfStats.record("parse", ((i * 37) % 100 + 1) * 1000000L);
+        }
+
+        List<PerfStats.Summary> summaries = PerfStats.snapshot();
+        assertEquals(1, summaries.size());
+        PerfStats.Summary summary = summaries.get(0);
+        assertEquals("parse", summary.stage);
+        assertEquals(100, summary.count);
+        assertEquals(50000000L, summary.p50);
+        assertEquals(90000000L, summary.p90);
+        assertEquals(99000000L, summary.p99);
+        assertEquals(100000000L, summary.max);
+    }
+
+    @Test
+    public void snapshot_keepsOnlyTheLastSamples() {
+        //the first samples are overwritten by the later, shorter ones
+        for (int i = 0; i < PerfStats.SAMPLE_COUNT; i++) {
+            PerfStats.record("bind", 5000000L);
+        }
+        for (int i = 0; i < PerfStats.SAMPLE_COUNT; i++) {
+            PerfStats.record("bind", 100000L);
+        }
+
+        PerfStats.Summary summary = PerfStats.snapshot().get(0);
+        assertEquals(2 * PerfStats.SAMPLE_COUNT, summary.count);
+        assertEquals(100000L, summary.max);
+    }
+
+    @Test
+    public void report_listsStagesInOrder() {
+        PerfStats.record("parse", 2500000L);
+        PerfStats.record("bind", 120000L);
+
+        String report = PerfStats.report();
+        assertTrue(report, report.startsWith("bind: n=1 p50=0.12"));
+        assertTrue(report, report.contains("parse: n=1 p50=2.50 "));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.guardiannews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryPlannerTest {
+    private static final List<String> SECTIONS =
+            Arrays.asList("world", "cities", "technology", "science", "environment", "global-development");
+
+    @Test
+    public void plan_foldsTheSectionsIntoOneQuery() {
+        List<QueryPlanner.Query> queries = QueryPlanner.plan(SECTIONS, 10, false);
+
+        assertEquals(1, queries.size());
+        assertEquals("cities|environment|global-development|science|technology|world", queries.get(0).sectionParameter());
+        assertEquals(60, queries.get(0).pageSize);
+    }
+
+    @Test
+    public void plan_splitsWhenThePageSizeLimitIsReached() {
+        List<QueryPlanner.Query> queries = QueryPlanner.plan(SECTIONS, 50, false);
+
+        assertEquals(2, queries.size());
+        assertEquals(Arrays.asList("cities", "environment", "global-development", "science"), queries.get(0).sectionIds);
+        assertEquals(200, queries.get(0).pageSize);
+        assertEquals(Arrays.asList("technology", "world"), queries.get(1).sectionIds);
+        assertEquals(100, queries.get(1).pageSize);
+    }
+
+    @Test
+    public void plan_perSection() {
+        List<QueryPlanner.Query> queries = QueryPlanner.plan(SECTIONS, 10, true);
+
+        assertEquals(SECTIONS.size(), queries.size());
+        for (QueryPlanner.Query query : queries) {
+            assertEquals(1, query.sectionIds.size());
+            assertEquals(10, query.pageSize);
+        }
+    }
+
+    @Test
+    public void plan_pageSizeOverTheLimit_queriesEachSection() {
+        List<QueryPlanner.Query> queries = QueryPlanner.plan(Arrays.asList("science", "world"), 300, false);
+
+        assertEquals(2, queries.size());
+        assertEquals(300, queries.get(0).pageSize);
+    }
+
+    @Test
+    public void plan_noSections() {
+        assertEquals(0, QueryPlanner.plan(Collections.<String>emptyList(), 10, false).size());
+    }
+
+    @Test
+    public void splitSections() {
+        assertEquals(Arrays.asList("science", "world"), QueryPlanner.splitSections("science|world"));
+        assertEquals(Collections.singletonList("science"), QueryPlanner.splitSections("science"));
+        assertEquals(0, QueryPlanner.splitSections(null).size());
+    }
+
+    @Test
+    public void splitBySection_keepsTheOrderOfEachSection() {
+        CategoryRegistry categories = CategoryRegistry.get();
+        int science = categories.idOf("science", "Science");
+        int world = categories.idOf("world", "World news");
+        List<Article> articles = new ArrayList<>();
+        articles.add(article("w1", world));
+        articles.add(article("s1", science));
+        articles.add(article("w2", world));
+        articles.add(article("s2", science));
+
+        Map<String, List<Article>> bySection = QueryPlanner.splitBySection(articles);
+
+        assertEquals(Arrays.asList("world", "science"), new ArrayList<>(bySection.keySet()));
+        assertEquals("w1", bySection.get("world").get(0).getArticleUrl());
+        assertEquals("w2", bySection.get("world").get(1).getArticleUrl());
+        assertEquals("s1", bySection.get("science").get(0).getArticleUrl());
+        assertEquals("s2", bySection.get("science").get(1).getArticleUrl());
+    }
+
+    private static Article article(String url, int categoryId) {
+        Article article = new Article();
+        article.setArticleUrl(url);
+        article.setCategoryId(categoryId);
+        return article;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.guardiannews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestCoalescerTest {
+
+    @Test
+    public void concurrentCallers_shareOneRequest() throws Exception {
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>(0);
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RequestCoalescer.Request<String> request = new RequestCoalescer.Request<String>() {
+            @Override
+            public String load(String key) {
+                requests.incrementAndGet();
+                requestStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "result of " + key;
+            }
+        };
+
+        final List<String> results = new ArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    String result = coalescer.get("technology", request);
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            });
+            callers.add(caller);
+            caller.start();
+        }
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        //the request is held until every caller has joined it
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalescer.callersOf("technology") < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(4, coalescer.callersOf("technology"));
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+
+        assertEquals(1, requests.get());
+        assertEquals(4, results.size());
+        for (String result : results) {
+            assertEquals("result of technology", result);
+        }
+    }
+
+    @Test
+    public void repeatedRequest_answeredFromMemoryWithinFreshnessWindow() throws Exception {
+        RequestCoalescer<Object> coalescer = new RequestCoalescer<>(200);
+        CountingRequest request = new CountingRequest();
+
+        Object first = coalescer.get("science", request);
+        assertSame(first, coalescer.get("science", request));
+        assertEquals(1, request.count.get());
+
+        //another key is requested on its own
+        coalescer.get("world", request);
+        assertEquals(2, request.count.get());
+
+        //after the window the request goes out again
+        Thread.sleep(300);
+        coalescer.get("science", request);
+        assertEquals(3, request.count.get());
+    }
+
+    @Test
+    public void failedRequest_isNotKept() {
+        RequestCoalescer<Object> coalescer = new RequestCoalescer<>(10000);
+        final AtomicInteger count = new AtomicInteger();
+        RequestCoalescer.Request<Object> failing = new RequestCoalescer.Request<Object>() {
+            @Override
+            public Object load(String key) {
+                count.incrementAndGet();
+                return null;
+            }
+        };
+
+        assertNull(coalescer.get("cities", failing));
+        assertNull(coalescer.get("cities", failing));
+        assertEquals(2, count.get());
+    }
+
+    private static class CountingRequest implements RequestCoalescer.Request<Object> {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object load(String key) {
+            count.incrementAndGet();
+            return new Object();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.android.guardiannews;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the retries, the backoff, the Retry-After handling and the circuit breaker of ResilientFetcher
+ * against a local stub server that answers each section with a scripted series of faults.
+ */
+public class ResilientFetcherTest {
+    private static final String BODY = "{\"response\":{\"results\":[]}}";
+    private static final long BASE_DELAY = 20; /* milliseconds */
+    private static final long MAX_DELAY = 1500; /* milliseconds */
+    private static final long OPEN_TIME = 300; /* milliseconds */
+
+    private HttpServer server;
+    private FaultInjectingHandler handler;
+    private CircuitBreaker breaker;
+    private ResilientFetcher fetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        handler = new FaultInjectingHandler();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        breaker = new CircuitBreaker(2, OPEN_TIME);
+        fetcher = new ResilientFetcher(new UrlConnectionFetcher(300, 1000), breaker, 3, BASE_DELAY, MAX_DELAY, new Random(1));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void serverErrorsAreRetried() throws IOException {
+        handler.script("science", Fault.status(503), Fault.status(500));
+
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+
+        assertEquals(HttpFetcher.HTTP_OK, response.getResponseCode());
+        response.close();
+        assertEquals(3, handler.requests("science"));
+    }
+
+    @Test
+    public void timeoutsAreRetried() throws IOException {
+        handler.script("science", Fault.delay(1000));
+
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+
+        assertEquals(HttpFetcher.HTTP_OK, response.getResponseCode());
+        response.close();
+        assertEquals(2, handler.requests("science"));
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws IOException {
+        handler.script("science", Fault.status(404));
+
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+
+        assertEquals(404, response.getResponseCode());
+        response.close();
+        assertEquals(1, handler.requests("science"));
+    }
+
+    @Test
+    public void lastResponseIsReturnedAfterEveryAttempt() throws IOException {
+        handler.script("science", Fault.status(502), Fault.status(502), Fault.status(503), Fault.status(503));
+
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+
+        assertEquals(503, response.getResponseCode());
+        response.close();
+        assertEquals(3, handler.requests("science"));
+    }
+
+    @Test
+    public void retryAfterIsWaitedFor() throws IOException {
+        handler.script("science", Fault.retryAfter(429, "1"));
+
+        long start = System.nanoTime();
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(HttpFetcher.HTTP_OK, response.getResponseCode());
+        response.close();
+        assertTrue("retried after " + elapsed + " ms", elapsed >= 1000);
+    }
+
+    @Test
+    public void retryAfterLongerThanTheLimitIsNotWaitedFor() throws IOException {
+        handler.script("science", Fault.retryAfter(503, "120"));
+
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+
+        assertEquals(503, response.getResponseCode());
+        response.close();
+        assertEquals(1, handler.requests("science"));
+    }
+
+    @Test
+    public void parseRetryAfter() {
+        long now = 1538395200000L;    //Mon, 01 Oct 2018 12:00:00 GMT
+        assertEquals(30000, ResilientFetcher.parseRetryAfter("30", now));
+        assertEquals(90000, ResilientFetcher.parseRetryAfter("Mon, 01 Oct 2018 12:01:30 GMT", now));
+        assertEquals(0, ResilientFetcher.parseRetryAfter("Mon, 01 Oct 2018 11:00:00 GMT", now));
+        assertEquals(-1, ResilientFetcher.parseRetryAfter("soon", now));
+        assertEquals(-1, ResilientFetcher.parseRetryAfter(null, now));
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyWithJitter() {
+        for (int attempt = 1; attempt <= 8; attempt++) {
+            long delay = Math.min(MAX_DELAY, BASE_DELAY << (attempt - 1));
+            for (int i = 0; i < 100; i++) {
+                long backoff = fetcher.backoffDelay(attempt);
+                assertTrue("attempt " + attempt + ": " + backoff, backoff > delay / 2 && backoff <= delay);
+            }
+        }
+    }
+
+    @Test
+    public void circuitOpensAfterRepeatedFailures_andClosesAfterASuccess() throws Exception {
+        handler.script("science", Fault.status(500), Fault.status(500), Fault.status(500),
+                Fault.status(500), Fault.status(500), Fault.status(500));
+
+        fetcher.fetch(sectionUrl("science")).close();
+        fetcher.fetch(sectionUrl("science")).close();
+        assertTrue(breaker.isOpen("science"));
+
+        //the open circuit fails right away, without a request
+        try {
+            fetcher.fetch(sectionUrl("science"));
+            fail("the circuit of science is open");
+        } catch (CircuitBreaker.OpenException expected) {
+        }
+        assertEquals(6, handler.requests("science"));
+
+        //the other sections have their own circuits
+        HttpFetcher.Response other = fetcher.fetch(sectionUrl("world"));
+        assertEquals(HttpFetcher.HTTP_OK, other.getResponseCode());
+        other.close();
+
+        //after the open time a request is let through again, and its success closes the circuit
+        Thread.sleep(OPEN_TIME + 50);
+        HttpFetcher.Response response = fetcher.fetch(sectionUrl("science"));
+        assertEquals(HttpFetcher.HTTP_OK, response.getResponseCode());
+        response.close();
+        assertFalse(breaker.isOpen("science"));
+    }
+
+    @Test
+    public void failedTrialOpensTheCircuitAgain() throws Exception {
+        for (int i = 0; i < 9; i++) {
+            handler.script("science", Fault.status(500));
+        }
+        fetcher.fetch(sectionUrl("science")).close();
+        fetcher.fetch(sectionUrl("science")).close();
+
+        Thread.sleep(OPEN_TIME + 50);
+        fetcher.fetch(sectionUrl("science")).close();
+
+        assertTrue(breaker.isOpen("science"));
+    }
+
+    @Test
+    public void halfOpenCircuitLetsOneTrialThrough() throws Exception {
+        breaker.recordFailure("science");
+        breaker.recordFailure("science");
+        assertFalse(breaker.allowRequest("science"));
+
+        //after the open time only the first request is sent, the others wait for its result
+        Thread.sleep(OPEN_TIME + 50);
+        assertTrue(breaker.allowRequest("science"));
+        assertFalse(breaker.allowRequest("science"));
+        assertTrue(breaker.isOpen("science"));
+
+        breaker.recordSuccess("science");
+        assertTrue(breaker.allowRequest("science"));
+        assertTrue(breaker.allowRequest("science"));
+    }
+
+    @Test
+    public void clientErrorDoesNotCloseTheCircuit() throws Exception {
+        handler.script("science", Fault.status(500), Fault.status(500), Fault.status(500),
+                Fault.status(500), Fault.status(500), Fault.status(500), Fault.status(404),
+                Fault.status(500), Fault.status(500), Fault.status(500));
+        fetcher.fetch(sectionUrl("science")).close();
+        fetcher.fetch(sectionUrl("science")).close();
+
+        //the trial gets a 404, the circuit stays half-open and the next request is the trial again
+        Thread.sleep(OPEN_TIME + 50);
+        HttpFetcher.Response notFound = fetcher.fetch(sectionUrl("science"));
+        assertEquals(404, notFound.getResponseCode());
+        notFound.close();
+        assertFalse(breaker.isOpen("science"));
+
+        //its failure opens the circuit again at once, the 404 hasn't reset the failures
+        fetcher.fetch(sectionUrl("science")).close();
+        assertTrue(breaker.isOpen("science"));
+    }
+
+    @Test
+    public void circuitOpenOnTimeouts() throws IOException {
+        handler.script("science", Fault.delay(1000), Fault.delay(1000), Fault.delay(1000),
+                Fault.delay(1000), Fault.delay(1000), Fault.delay(1000));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                fetcher.fetch(sectionUrl("science"));
+                fail("every attempt times out");
+            } catch (SocketTimeoutException expected) {
+            }
+        }
+
+        assertTrue(breaker.isOpen("science"));
+    }
+
+    @Test
+    public void sectionOfQuery() throws IOException {
+        assertEquals("science", ResilientFetcher.sectionOf(new URL("http://content.guardianapis.com/search?section=science&page=2")));
+        assertEquals("/search", ResilientFetcher.sectionOf(new URL("http://content.guardianapis.com/search?q=mars")));
+    }
+
+    private URL sectionUrl(String section) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/search?section=" + section);
+    }
+
+    //one scripted answer of the stub server
+    private static class Fault {
+        final int status;
+        final long delay;
+        final String retryAfter;
+
+        private Fault(int status, long delay, String retryAfter) {
+            this.status = status;
+            this.delay = delay;
+            this.retryAfter = retryAfter;
+        }
+
+        static Fault status(int status) {
+            return new Fault(status, 0, null);
+        }
+
+        //a 200 response that arrives after the delay, later than the read timeout of the fetcher
+        static Fault delay(long delay) {
+            return new Fault(200, delay, null);
+        }
+
+        static Fault retryAfter(int status, String retryAfter) {
+            return new Fault(status, 0, retryAfter);
+        }
+    }
+
+    //answers the requests of each section with its scripted faults first, then with 200 and the body
+    private static class FaultInjectingHandler implements HttpHandler {
+        private final Map<String, Queue<Fault>> scripts = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+        void script(String section, Fault... faults) {
+            Queue<Fault> script = scriptOf(section);
+            for (Fault fault : faults) {
+                script.add(fault);
+            }
+        }
+
+        int requests(String section) {
+            AtomicInteger count = requests.get(section);
+            return count != null ? count.get() : 0;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String section = exchange.getRequestURI().getQuery().substring("section=".length());
+            requests.putIfAbsent(section, new AtomicInteger());
+            requests.get(section).incrementAndGet();
+
+            Fault fault = scriptOf(section).poll();
+            int status = 200;
+            if (fault != null) {
+                if (fault.delay > 0) {
+                    try {
+                        Thread.sleep(fault.delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                status = fault.status;
+                if (fault.retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", fault.retryAfter);
+                }
+            }
+
+            byte[] body = (status == 200 ? BODY : "error").getBytes(Charset.forName("UTF-8"));
+            exchange.sendResponseHeaders(status, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+
+        private Queue<Fault> scriptOf(String section) {
+            scripts.putIfAbsent(section, new ConcurrentLinkedQueue<Fault>());
+            return scripts.get(section);
+        }
+    }
+}
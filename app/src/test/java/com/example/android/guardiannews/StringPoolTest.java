@@ -0,0 +1,40 @@
+package com.example.android.guardiannews;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StringPoolTest {
+
+    @Test
+    public void intern_returnsTheFirstEqualInstance() {
+        StringPool pool = new StringPool();
+        String first = new String("Damian Carrington");
+        String second = new String("Damian Carrington");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void intern_keepsDifferentValues() {
+        StringPool pool = new StringPool();
+        String first = pool.intern("Fiona Harvey");
+        String second = pool.intern("Ian Sample");
+
+        assertEquals("Fiona Harvey", first);
+        assertEquals("Ian Sample", second);
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void intern_null() {
+        StringPool pool = new StringPool();
+
+        assertNull(pool.intern(null));
+        assertEquals(0, pool.size());
+    }
+}
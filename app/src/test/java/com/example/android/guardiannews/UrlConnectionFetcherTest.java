@@ -0,0 +1,184 @@
+package com.example.android.guardiannews;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the conditional requests, the gzip decoding, the connection reuse and the timings
+ * of UrlConnectionFetcher against a local stub server.
+ */
+public class UrlConnectionFetcherTest {
+    private static final String BODY = "{\"response\":{\"results\":[]}}";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 01 Oct 2018 12:00:00 GMT";
+
+    private HttpServer server;
+    private StubHandler handler;
+    private UrlConnectionFetcher fetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        handler = new StubHandler();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", handler);
+        server.start();
+        fetcher = new UrlConnectionFetcher(1000, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void firstRequestIsNotConditional() throws IOException {
+        HttpFetcher.Response response = fetcher.fetch(searchUrl());
+
+        assertEquals(HttpFetcher.HTTP_OK, response.getResponseCode());
+        assertEquals(BODY, read(response.getBody()));
+        response.close();
+        assertNull(handler.ifNoneMatch);
+        assertNull(handler.ifModifiedSince);
+    }
+
+    @Test
+    public void rememberedValidatorsAreSentAndAnsweredWith304() throws IOException {
+        HttpFetcher.Response first = fetcher.fetch(searchUrl());
+        read(first.getBody());
+        fetcher.remember(searchUrl(), first);
+        first.close();
+
+        HttpFetcher.Response second = fetcher.fetch(searchUrl());
+
+        assertEquals(ETAG, handler.ifNoneMatch);
+        assertEquals(LAST_MODIFIED, handler.ifModifiedSince);
+        assertTrue(second.isNotModified());
+        assertNull(second.getBody());
+        second.close();
+    }
+
+    @Test
+    public void forgottenUrlIsDownloadedAgain() throws IOException {
+        HttpFetcher.Response first = fetcher.fetch(searchUrl());
+        fetcher.remember(searchUrl(), first);
+        first.close();
+        fetcher.forget(searchUrl());
+
+        HttpFetcher.Response second = fetcher.fetch(searchUrl());
+
+        assertFalse(second.isNotModified());
+        assertNull(handler.ifNoneMatch);
+        second.close();
+    }
+
+    @Test
+    public void gzipResponseIsDecoded() throws IOException {
+        handler.gzip = true;
+
+        HttpFetcher.Response response = fetcher.fetch(searchUrl());
+
+        assertEquals("gzip", handler.acceptEncoding);
+        assertEquals(BODY, read(response.getBody()));
+        response.close();
+    }
+
+    @Test
+    public void closedResponseReturnsTheConnectionToThePool() throws IOException {
+        HttpFetcher.Response first = fetcher.fetch(searchUrl());
+        first.close();
+        HttpFetcher.Response second = fetcher.fetch(searchUrl());
+        second.close();
+
+        assertEquals(2, handler.requestCount);
+        assertEquals(1, handler.clientPorts.size());
+    }
+
+    @Test
+    public void timingsCoverTheWholeBody() throws IOException {
+        HttpFetcher.Response response = fetcher.fetch(searchUrl());
+        read(response.getBody());
+        response.close();
+
+        HttpFetcher.Timings timings = response.getTimings();
+        assertEquals(BODY.length(), timings.bodyBytes);
+        assertTrue(timings.timeToFirstByte > 0);
+        assertTrue(timings.total() >= timings.timeToFirstByte + timings.body);
+    }
+
+    private URL searchUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/search?section=science");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), Charset.forName("UTF-8"));
+    }
+
+    //answers 304 when the request carries the current validators, otherwise sends the body
+    private static class StubHandler implements HttpHandler {
+        volatile boolean gzip;
+        volatile String ifNoneMatch;
+        volatile String ifModifiedSince;
+        volatile String acceptEncoding;
+        volatile int requestCount;
+        final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requestCount++;
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(HttpFetcher.HTTP_NOT_MODIFIED, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = BODY.getBytes(Charset.forName("UTF-8"));
+            if (gzip) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+                gzipOut.write(body);
+                gzipOut.close();
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(HttpFetcher.HTTP_OK, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+#!/usr/bin/env python3
+# Generates the synthetic Guardian search responses used by the benchmarks and the instrumented tests.
+# They are NOT recorded API responses: the titles and trail texts are random words, the contributors are
+# drawn from 16 names and the dates go back from 2018-10-01 by random steps, independent of the date in the url.
+# The structure (fields, tags and their attributes) follows a real response of the search endpoint, so the
+# parsers do the same work, but the content isn't representative of the size or the variety of real articles.
+# The output is deterministic (fixed seeds, gzip mtime 0), run it from anywhere to write the files again:
+#   python3 benchmark/scripts/generate_fixtures.py
+import datetime
+import gzip
+import json
+import os
+import random
+
+ROOT = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', '..')
+BENCHMARK_FIXTURES = os.path.join(ROOT, 'benchmark', 'src', 'jmh', 'resources', 'fixtures')
+TEST_ASSETS = os.path.join(ROOT, 'app', 'src', 'androidTest', 'assets')
+
+SECTIONS = [("technology", "Technology"), ("science", "Science"), ("cities", "Cities"), ("world", "World news"),
+            ("global-development", "Global development"), ("environment", "Environment")]
+AUTHORS = ["Alex Hern", "Nicola Davis", "Damian Carrington", "Hannah Devlin", "Samuel Gibbs", "Fiona Harvey",
+           "Ian Sample", "Jonathan Watts", "Julian Borger", "Patrick Wintour", "Kate Lyons", "Oliver Wainwright",
+           "Karen McVeigh", "Liz Ford", "Matthew Taylor", "Robin McKie"]
+WORDS = ("climate city data phone research policy energy water ocean species health study market network privacy "
+         "planet future crisis report council housing transport election aid girls school forest carbon plastic "
+         "robot space vaccine").split()
+
+
+def sentence(r, n):
+    return " ".join(r.choice(WORDS) for _ in range(n)).capitalize()
+
+
+# one page of n results, of all the sections in turn (mixed) or of the first section only
+def generate(n, sections, seed, pages=20, mixed=True):
+    r = random.Random(seed)
+    results = []
+    t = 1538400000  # 2018-10-01
+    for i in range(n):
+        sid, sname = sections[i % len(sections)] if mixed else sections[0]
+        t -= r.randint(60, 3600)
+        d = datetime.datetime.utcfromtimestamp(t).strftime("%Y-%m-%dT%H:%M:%SZ")
+        slug = "-".join(sentence(r, 6).lower().split())
+        aid = "%s/2018/oct/%02d/%s" % (sid, (t // 86400) % 28 + 1, slug)
+        a = r.choice(AUTHORS)
+        tags = []
+        # about a tenth of the articles have no contributor, like agency copy
+        if r.random() < 0.9:
+            tagid = "profile/" + a.lower().replace(" ", "")
+            tags.append({"id": tagid, "type": "contributor", "webTitle": a,
+                         "webUrl": "https://www.theguardian.com/" + tagid,
+                         "apiUrl": "https://content.guardianapis.com/" + tagid, "references": [],
+                         "bio": "<p>%s is a Guardian writer</p>" % a,
+                         "bylineImageUrl": "https://uploads.guim.co.uk/2017/10/06/%s,-L.png" % a.replace(" ", "-"),
+                         "firstName": a.split()[0].lower(), "lastName": a.split()[1].lower()})
+        results.append({"id": aid, "type": "article", "sectionId": sid, "sectionName": sname,
+                        "webPublicationDate": d, "webTitle": sentence(r, r.randint(6, 14)),
+                        "webUrl": "https://www.theguardian.com/" + aid,
+                        "apiUrl": "https://content.guardianapis.com/" + aid,
+                        "fields": {"trailText": sentence(r, r.randint(15, 30))
+                                   + " <strong>" + r.choice(WORDS) + "</strong>"},
+                        "tags": tags, "isHosted": False, "pillarId": "pillar/news", "pillarName": "News"})
+    return {"response": {"status": "ok", "userTier": "developer", "total": n * pages, "startIndex": 1,
+                         "pageSize": n, "currentPage": 1, "pages": pages, "orderBy": "newest",
+                         "results": results}}
+
+
+def write_gzip(path, data):
+    raw = json.dumps(data, separators=(',', ':')).encode()
+    with open(path, 'wb') as f:
+        f.write(gzip.compress(raw, mtime=0))
+
+
+def main():
+    # the responses of one section each, in the sizes of the JMH benchmarks
+    for size in (10, 50, 200):
+        for i, (sid, sname) in enumerate(SECTIONS):
+            data = generate(size, [(sid, sname)], size * 100 + i, mixed=False)
+            write_gzip(os.path.join(BENCHMARK_FIXTURES, '%s_%d.json.gz' % (sid, size)), data)
+            # the 50-result pages are also loaded by ArticleHeapBenchmark
+            if size == 50:
+                write_gzip(os.path.join(TEST_ASSETS, 'sections', '%s_%d.json.gz' % (sid, size)), data)
+
+    # one combined response of 50 results of every section, for the parser and adapter tests
+    with open(os.path.join(TEST_ASSETS, 'guardian_search_50.json'), 'w') as f:
+        json.dump(generate(50, SECTIONS, 50), f, indent=2)
+
+
+if __name__ == '__main__':
+    main()
@@ -0,0 +1,154 @@
+package com.example.android.guardiannews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measures the stages between the downloaded responses and the list on the screen:
+ * reading and parsing the response of every category, sorting or merging the lists and picking the category of each row.
+ * Every invocation processes the responses of all six categories, like one load of ArticleLoader.
+ * The fixtures have the structure of Guardian search responses (show-tags=contributor, show-fields=trailText)
+ * with 10, 50 and 200 results per section. They are generated by benchmark/scripts/generate_fixtures.py,
+ * not recorded: the texts are random words and there are only 16 contributors (see fixtures/README.md).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArticlePipelineBenchmark {
+    private static final String[] SECTIONS = {"cities", "environment", "global-development", "science", "technology", "world"};
+
+    @Param({"10", "50", "200"})
+    public int resultsPerSection;
+
+    private byte[][] responses;
+    private String[] jsonResponses;
+    private List<Article> mergedArticles;
+    private List<List<Article>> sectionArticles;
+    private List<Article> articlesToSort;
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        responses = new byte[SECTIONS.length][];
+        jsonResponses = new String[SECTIONS.length];
+        mergedArticles = new ArrayList<>();
+        sectionArticles = new ArrayList<>();
+        for (int i = 0; i < SECTIONS.length; i++) {
+            responses[i] = readFixture(SECTIONS[i] + "_" + resultsPerSection + ".json.gz");
+            jsonResponses[i] = new String(responses[i], Charset.forName("UTF-8"));
+            List<Article> articles = ArticleStreamParser.parse(new ByteArrayInputStream(responses[i]));
+            mergedArticles.addAll(articles);
+
+            //the sections are queried with order-by=newest, so each of them arrives sorted
+            List<Article> sortedArticles = new ArrayList<>(articles);
+            ArticleUtils.sortArticles(sortedArticles, true);
+            sectionArticles.add(sortedArticles);
+        }
+    }
+
+    //the list is sorted in place, so every invocation starts from the unsorted merged list
+    @Setup(Level.Invocation)
+    public void copyMergedArticles() {
+        articlesToSort = new ArrayList<>(mergedArticles);
+    }
+
+    @Benchmark
+    public void readFromStream(Blackhole blackhole) throws IOException {
+        for (byte[] response : responses) {
+            blackhole.consume(ArticleUtils.readFromStream(new ByteArrayInputStream(response)));
+        }
+    }
+
+    //the org.json path: the response string is parsed into a JSONObject tree first
+    @Benchmark
+    public void getArticleList(Blackhole blackhole) {
+        for (String jsonResponse : jsonResponses) {
+            blackhole.consume(ArticleUtils.getArticleList(jsonResponse));
+        }
+    }
+
+    //the org.json path including reading the stream into a string
+    @Benchmark
+    public void readAndGetArticleList(Blackhole blackhole) throws IOException {
+        for (byte[] response : responses) {
+            blackhole.consume(ArticleUtils.getArticleList(ArticleUtils.readFromStream(new ByteArrayInputStream(response))));
+        }
+    }
+
+    @Benchmark
+    public void streamingParse(Blackhole blackhole) throws IOException {
+        for (byte[] response : responses) {
+            blackhole.consume(ArticleStreamParser.parse(new ByteArrayInputStream(response)));
+        }
+    }
+
+    //the streaming parse of ArticleLoader: the categories of the load share one pool of the contributor names
+    @Benchmark
+    public void streamingParsePooled(Blackhole blackhole) throws IOException {
+        StringPool pool = new StringPool();
+        for (byte[] response : responses) {
+            blackhole.consume(ArticleStreamParser.parse(new ByteArrayInputStream(response), pool));
+        }
+    }
+
+    //sorting the concatenated lists of the sections, in the default newest-first order
+    @Benchmark
+    public List<Article> sortNewestFirst() {
+        ArticleUtils.sortArticles(articlesToSort, true);
+        return articlesToSort;
+    }
+
+    @Benchmark
+    public List<Article> sortOldestFirst() {
+        ArticleUtils.sortArticles(articlesToSort, false);
+        return articlesToSort;
+    }
+
+    //the merge of ArticleLoader: the sorted sections are merged with a heap and the duplicates are removed
+    @Benchmark
+    public List<Article> mergeNewestFirst() {
+        return ArticleMerger.merge(sectionArticles, true);
+    }
+
+    //ArticleAdapter.onBindViewHolder asks for the category of every row
+    @Benchmark
+    public int getCategoryCase() {
+        int sum = 0;
+        for (Article article : mergedArticles) {
+            sum += article.getCategoryCase();
+        }
+        return sum;
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream in = new GZIPInputStream(ArticlePipelineBenchmark.class.getResourceAsStream("/fixtures/" + name));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}